@@ -24,62 +24,73 @@
  */
 package com.techshroom.ludicroushooks;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-
-import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Multimap;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.techshroom.ludicroushooks.command.CommandLudicrousHooks;
+import com.techshroom.ludicroushooks.config.HooksConfig;
 import com.techshroom.ludicroushooks.entity.EntityHangHook;
 import com.techshroom.ludicroushooks.entity.EntityHook;
 import com.techshroom.ludicroushooks.entity.EntityMotorizedHook;
-import com.techshroom.ludicroushooks.entity.LongDataSerializer;
-import com.techshroom.ludicroushooks.entity.UUIDDataSerializer;
-import com.techshroom.ludicroushooks.entity.Vec3dDataSerializer;
 import com.techshroom.ludicroushooks.item.ItemHangGrappleGun;
 import com.techshroom.ludicroushooks.item.ItemMotorizedGrappleGun;
-import com.techshroom.ludicroushooks.json.MultimapAdapter;
-import com.techshroom.ludicroushooks.json.NBTAdapter;
 import com.techshroom.ludicroushooks.movement.MotionController;
+import com.techshroom.ludicroushooks.network.HookEventsMessage;
+import com.techshroom.ludicroushooks.network.HookShotMessage;
+import com.techshroom.ludicroushooks.pending.PendingHookStore;
+import com.techshroom.ludicroushooks.pending.PendingHooks;
+import com.techshroom.ludicroushooks.player.PlayerIndex;
 import com.techshroom.ludicroushooks.proxy.Proxy;
+import com.techshroom.ludicroushooks.targeting.AttachabilityTable;
+import com.techshroom.ludicroushooks.world.HookRestoreQueue;
+import com.techshroom.ludicroushooks.world.HookWorld;
 
-import net.minecraft.block.BlockLiquid;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.creativetab.CreativeTabs;
-import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityList;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.Item;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.network.datasync.DataSerializers;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
 import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.Mod.EventHandler;
 import net.minecraftforge.fml.common.Mod.Instance;
 import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.FMLConstructionEvent;
+import net.minecraftforge.fml.common.event.FMLModIdMappingEvent;
+import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
-import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerChangedDimensionEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerRespawnEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.PlayerTickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
+import net.minecraftforge.fml.common.network.NetworkRegistry;
+import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 import net.minecraftforge.fml.common.registry.EntityRegistry;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
@@ -90,15 +101,6 @@ public class LudicrousHooks {
 
     public static final Logger LOGGER = LogManager.getLogger(Constants.MOD_ID);
 
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting()
-            .disableHtmlEscaping()
-            .registerTypeAdapter(NBTTagCompound.class, NBTAdapter.INSTANCE)
-            .registerTypeAdapterFactory(MultimapAdapter.INSTANCE).create();
-
-    @SuppressWarnings("serial")
-    private static final Type UNSPAWNED_HOOKS_TYPE =
-            new TypeToken<Multimap<UUID, NBTTagCompound>>() {}.getType();
-
     @Instance
     private static LudicrousHooks instance;
 
@@ -126,9 +128,15 @@ public class LudicrousHooks {
                     .setUnlocalizedName("grapplegun.hang").setHasSubtypes(true)
                     .setMaxStackSize(1);
 
-    private Path unspawnedHooksSave;
-    private Multimap<UUID, NBTTagCompound> unspawnedHooks =
-            HashMultimap.create();
+    private HooksConfig config;
+    private volatile AttachabilityTable attachabilityTable;
+    private final Map<World, HookWorld> hookWorlds =
+            new MapMaker().weakKeys().makeMap();
+    private final PlayerIndex serverPlayers = new PlayerIndex();
+    private final PlayerIndex clientPlayers = new PlayerIndex();
+    private Path pendingHooksDirectory;
+    private PendingHookStore pendingHooks;
+    private SimpleNetworkWrapper network;
     // TODO move to ClientProxy??
     @SideOnly(Side.CLIENT)
     private Multimap<UUID, MotionController<?>> activeMotionControllers =
@@ -140,70 +148,279 @@ public class LudicrousHooks {
     }
 
     @EventHandler
-    public void onPreInit(FMLPreInitializationEvent event) throws IOException {
-        this.unspawnedHooksSave = event.getModConfigurationDirectory().toPath()
-                .resolve(Constants.MOD_ID).resolve("unspawnedHooks.json");
-        Files.createDirectories(this.unspawnedHooksSave.getParent());
+    public void onPreInit(FMLPreInitializationEvent event) {
+        this.config = new HooksConfig(event.getSuggestedConfigurationFile());
+        this.config.load();
+        this.pendingHooksDirectory = event.getModConfigurationDirectory()
+                .toPath().resolve(Constants.MOD_ID);
 
         int id = 0;
         EntityRegistry.registerModEntity(EntityMotorizedHook.class,
-                "hook.motor", id++, this, 256, 20, false);
+                "hook.motor", id++, this, EntityHook.TRACKING_RANGE,
+                EntityHook.UPDATE_FREQUENCY, false);
         EntityRegistry.registerModEntity(EntityHangHook.class, "hook.hang",
-                id++, this, 256, 20, false);
-        DataSerializers.registerSerializer(UUIDDataSerializer.INSTANCE);
-        DataSerializers.registerSerializer(Vec3dDataSerializer.INSTANCE);
-        DataSerializers.registerSerializer(LongDataSerializer.INSTANCE);
+                id++, this, EntityHook.TRACKING_RANGE,
+                EntityHook.UPDATE_FREQUENCY, false);
+        PendingHooks.register();
+        this.network =
+                NetworkRegistry.INSTANCE.newSimpleChannel(Constants.MOD_ID);
+        this.network.registerMessage(HookEventsMessage.Handler.class,
+                HookEventsMessage.class, 0, Side.CLIENT);
+        this.network.registerMessage(HookShotMessage.Handler.class,
+                HookShotMessage.class, 1, Side.SERVER);
 
         getProxy().onPreInit(event);
 
-        if (Files.exists(this.unspawnedHooksSave)) {
-            try (Reader r = Files.newBufferedReader(this.unspawnedHooksSave)) {
-                Multimap<UUID, NBTTagCompound> hooks =
-                        GSON.fromJson(r, UNSPAWNED_HOOKS_TYPE);
-                checkNotNull(hooks);
-                this.unspawnedHooks.putAll(hooks);
-            } catch (Exception e) {
-                event.getModLog().warn(
-                        "Error loading unspawned hooks, backing up and deleting file",
-                        e);
-                Files.move(this.unspawnedHooksSave,
-                        this.unspawnedHooksSave
-                                .resolveSibling("unspawnedHooks.json.bak"),
-                        StandardCopyOption.REPLACE_EXISTING);
+        openPendingHooks();
+    }
+
+    @EventHandler
+    public void onPostInit(FMLPostInitializationEvent event) {
+        compileAttachabilityTable();
+    }
+
+    @EventHandler
+    public void onIdMapping(FMLModIdMappingEvent event) {
+        // state IDs depend on block IDs
+        compileAttachabilityTable();
+    }
+
+    @EventHandler
+    public void onServerStarting(FMLServerStartingEvent event) {
+        event.registerServerCommand(new CommandLudicrousHooks());
+    }
+
+    public void reloadConfig() {
+        this.config.load();
+        compileAttachabilityTable();
+        applyPendingLimits();
+    }
+
+    private void openPendingHooks() {
+        this.pendingHooks = new PendingHookStore(this.pendingHooksDirectory);
+        applyPendingLimits();
+        // nothing needs them until a player joins
+        this.pendingHooks.startLoading();
+    }
+
+    private void applyPendingLimits() {
+        this.pendingHooks.setLimits(this.config.getPendingMaxPerPlayer(),
+                this.config.getPendingMemoryBudgetKiB() * 1024L,
+                TimeUnit.DAYS.toMillis(this.config.getPendingMaxAgeDays()));
+    }
+
+    public PendingHookStore getPendingHookStore() {
+        return this.pendingHooks;
+    }
+
+    public SimpleNetworkWrapper getNetwork() {
+        return this.network;
+    }
+
+    private void compileAttachabilityTable() {
+        this.attachabilityTable = AttachabilityTable.compile(
+                this.config.getAttachAllow(), this.config.getAttachDeny());
+        // a client index is only touched on the client thread, it's cleared
+        // there
+        this.hookWorlds.values().stream().filter(w -> !w.getWorld().isRemote)
+                .forEach(w -> w.getAttachIndex().clear());
+        getProxy().clearClientAttachIndex();
+    }
+
+    public HookWorld getHookWorld(World world) {
+        return this.hookWorlds.computeIfAbsent(world, HookWorld::new);
+    }
+
+    /**
+     * Returns the hook world for {@code world} without creating it, or
+     * {@code null} if the world was never loaded or is already unloaded.
+     */
+    public HookWorld getExistingHookWorld(World world) {
+        return this.hookWorlds.get(world);
+    }
+
+    public Map<World, HookWorld> getHookWorlds() {
+        return this.hookWorlds;
+    }
+
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        getHookWorld(event.getWorld());
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        HookWorld hookWorld = this.hookWorlds.remove(event.getWorld());
+        if (hookWorld != null) {
+            hookWorld.close();
+        }
+        if (event.getWorld().isRemote) {
+            // players are re-added when the next client world loads
+            this.clientPlayers.clear();
+        }
+    }
+
+    /**
+     * Returns the player index for the side {@code world} is on. Client
+     * players are tracked by {@link HookWorld}, as they enter and leave the
+     * client world.
+     */
+    public PlayerIndex getPlayerIndex(World world) {
+        return world.isRemote ? this.clientPlayers : this.serverPlayers;
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerLoggedInEvent event) {
+        this.serverPlayers.put(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        this.serverPlayers.put(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerChangedDimensionEvent event) {
+        this.serverPlayers.put(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerLoggedOutEvent event) {
+        this.serverPlayers.remove(event.player);
+        // this runs before the player is saved, so their hooks go with them
+        PendingHooks pending =
+                event.player.getCapability(PendingHooks.CAPABILITY, null);
+        if (pending == null) {
+            return;
+        }
+        for (HookWorld hookWorld : this.hookWorlds.values()) {
+            if (hookWorld.getWorld().isRemote) {
+                continue;
+            }
+            // not restored yet, they go back as they are
+            hookWorld.getRestoreQueue().take(event.player.getUniqueID())
+                    .forEach(pending::add);
+            Collection<EntityHook> hooks = ImmutableList.copyOf(hookWorld
+                    .getHooks().getByOwner(event.player.getUniqueID()));
+            for (EntityHook hook : hooks) {
+                NBTTagCompound data = hook.removeForRestore();
+                if (data != null) {
+                    pending.add(data);
+                }
             }
         }
     }
 
+    @SubscribeEvent
+    public void onAttachEntityCapabilities(
+            AttachCapabilitiesEvent.Entity event) {
+        if (event.getEntity() instanceof EntityPlayerMP) {
+            event.addCapability(PendingHooks.ID, new PendingHooks.Provider());
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerClone(PlayerEvent.Clone event) {
+        PendingHooks original = event.getOriginal()
+                .getCapability(PendingHooks.CAPABILITY, null);
+        PendingHooks clone = event.getEntityPlayer()
+                .getCapability(PendingHooks.CAPABILITY, null);
+        if (original != null && clone != null) {
+            clone.copyFrom(original);
+        }
+    }
+
+    @SubscribeEvent
+    public void beforeWorldTick(WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.START || event.world.isRemote) {
+            return;
+        }
+        getHookWorld(event.world).getMotionSimulator().tick();
+    }
+
+    @SubscribeEvent
+    public void afterWorldTick(WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.world.isRemote) {
+            return;
+        }
+        HookWorld hookWorld = getHookWorld(event.world);
+        hookWorld.getTimingWheel().advanceTo(event.world.getTotalWorldTime());
+        hookWorld.getRestoreQueue()
+                .drain(this.config.getPendingRestorePerTick());
+        hookWorld.getEventBatcher().flush();
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        // clients can get new data for a chunk without an unload
+        dropChunk(event.getWorld(), event.getChunk());
+        HookWorld hookWorld = getExistingHookWorld(event.getWorld());
+        if (hookWorld != null && !event.getWorld().isRemote) {
+            hookWorld.getRestoreQueue().onChunkLoaded(
+                    event.getChunk().xPosition, event.getChunk().zPosition);
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        dropChunk(event.getWorld(), event.getChunk());
+    }
+
+    private void dropChunk(World world, Chunk chunk) {
+        HookWorld hookWorld = getExistingHookWorld(world);
+        if (hookWorld != null) {
+            hookWorld.getAttachIndex().onChunkUnloaded(chunk.xPosition,
+                    chunk.zPosition);
+        }
+    }
+
     @SubscribeEvent
     public void onItemRegistryReady(RegistryEvent.Register<Item> event) {
         event.getRegistry().register(MOTOR_GRAPPLE_GUN);
         event.getRegistry().register(HANG_GRAPPLE_GUN);
     }
 
-    @EventHandler
-    public void onShutdown(FMLServerStoppingEvent event) throws IOException {
-        try (Writer w = Files.newBufferedWriter(this.unspawnedHooksSave)) {
-            GSON.toJson(this.unspawnedHooks, UNSPAWNED_HOOKS_TYPE, w);
+    @SubscribeEvent
+    public void onWorldSave(WorldEvent.Save event) {
+        World world = event.getWorld();
+        // every dimension saves together, snapshot once
+        if (!world.isRemote && world.provider.getDimension() == 0) {
+            this.pendingHooks.saveSnapshot();
         }
     }
 
+    @EventHandler
+    public void onShutdown(FMLServerStoppedEvent event) {
+        // the worlds have saved by now, wait for that snapshot
+        this.pendingHooks.close();
+        // an integrated server can start again in the same game
+        openPendingHooks();
+    }
+
     @SubscribeEvent
     public void onPlayerEntitySpawn(EntityJoinWorldEvent event) {
-        if (!(event.getEntity() instanceof EntityPlayer)) {
+        if (!(event.getEntity() instanceof EntityPlayer)
+                || event.getWorld().isRemote) {
             return;
         }
-        Collection<NBTTagCompound> hooks =
-                this.unspawnedHooks.get(event.getEntity().getUniqueID());
-        hooks.forEach(h -> {
-            Entity hook = EntityList.createEntityFromNBT(h, event.getWorld());
-            if (!(hook instanceof EntityHook)) {
-                LOGGER.warn("Unspanwed hook created an instance of "
-                        + hook.getClass().getName() + " rather than "
-                        + EntityHook.class.getName());
-            }
-            event.getWorld().spawnEntityInWorld(hook);
-        });
-        hooks.clear();
+        EntityPlayer player = (EntityPlayer) event.getEntity();
+        UUID id = player.getUniqueID();
+        PendingHooks pending =
+                player.getCapability(PendingHooks.CAPABILITY, null);
+        boolean hasOwn = pending != null && !pending.isEmpty();
+        // hooks left behind while the owner was offline
+        boolean hasStored = this.pendingHooks.contains(id);
+        if (!hasOwn && !hasStored) {
+            return;
+        }
+        HookRestoreQueue queue =
+                getHookWorld(event.getWorld()).getRestoreQueue();
+        if (hasOwn) {
+            queue.add(id, pending.take());
+        }
+        if (hasStored) {
+            queue.add(id, this.pendingHooks.take(id));
+        }
     }
 
     @SubscribeEvent
@@ -221,17 +438,39 @@ public class LudicrousHooks {
         hooks.forEach(h -> h.updatePlayerMotion(event.player));
     }
 
+    /**
+     * Keeps a hook to restore when {@code owner} next joins a world. Hooks of
+     * online players are kept with the player, others in the global store.
+     */
     public void addPendingHook(UUID owner, NBTTagCompound compound) {
-        this.unspawnedHooks.put(owner, compound);
+        EntityPlayer player = this.serverPlayers.get(owner);
+        PendingHooks pending = player == null ? null
+                : player.getCapability(PendingHooks.CAPABILITY, null);
+        if (pending != null) {
+            pending.add(compound);
+        } else {
+            this.pendingHooks.add(owner, compound);
+        }
     }
 
     public boolean canAttachTo(IBlockState state) {
-        // TODO config
-        // not liquids
-        // full cubes
-        // or opaque non-cubes
-        return !(state.getBlock() instanceof BlockLiquid)
-                && (state.isFullCube() || state.getMaterial().isOpaque());
+        return this.attachabilityTable.canAttachTo(state);
+    }
+
+    /**
+     * Returns {@code true} if the state stops a hook in flight. The hook then
+     * either attaches or fails, depending on {@link #canAttachTo}.
+     */
+    public boolean blocksHook(IBlockState state) {
+        return this.attachabilityTable.blocksHook(state);
+    }
+
+    /**
+     * Returns {@code true} if newly attached hooks should move their owner
+     * on the server.
+     */
+    public boolean isServerMotion() {
+        return this.config.isServerMotion();
     }
 
     @SideOnly(Side.CLIENT)
@@ -51,4 +51,23 @@ public class VecUtil {
     public static Vec3d setLength(Vec3d v, double d) {
         return v.scale(d / v.lengthVector());
     }
+
+    /**
+     * Returns the squared distance on the XZ plane from {@code (px, pz)} to
+     * the segment from {@code (ax, az)} to {@code (bx, bz)}.
+     */
+    public static double horizontalDistanceSqToSegment(double px, double pz,
+            double ax, double az, double bx, double bz) {
+        double dx = bx - ax;
+        double dz = bz - az;
+        double lengthSq = dx * dx + dz * dz;
+        double t = 0;
+        if (lengthSq > 0) {
+            t = ((px - ax) * dx + (pz - az) * dz) / lengthSq;
+            t = Math.max(0, Math.min(1, t));
+        }
+        double offX = px - (ax + dx * t);
+        double offZ = pz - (az + dz * t);
+        return offX * offX + offZ * offZ;
+    }
 }
@@ -0,0 +1,193 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.command;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.techshroom.ludicroushooks.Constants;
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.entity.EntityHook;
+import com.techshroom.ludicroushooks.pending.PendingHookStore;
+import com.techshroom.ludicroushooks.player.PlayerIndex;
+import com.techshroom.ludicroushooks.targeting.SectionAttachIndex;
+import com.techshroom.ludicroushooks.world.HookMotionSimulator;
+import com.techshroom.ludicroushooks.world.HookRegistry;
+import com.techshroom.ludicroushooks.world.HookTrackingStats;
+import com.techshroom.ludicroushooks.world.HookWorld;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.entity.EntityTracker;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+
+/**
+ * Admin command, {@code /ludicroushooks <subcommand>}.
+ */
+public class CommandLudicrousHooks extends CommandBase {
+
+    private static final String USAGE =
+            "/" + Constants.MOD_ID + " <reload|stats|hooks [dimension]>";
+
+    @Override
+    public String getCommandName() {
+        return Constants.MOD_ID;
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return USAGE;
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender,
+            String[] args) throws CommandException {
+        if (args.length < 1) {
+            throw new WrongUsageException(USAGE);
+        }
+        switch (args[0]) {
+            case "reload":
+                LudicrousHooks.getInstance().reloadConfig();
+                sender.addChatMessage(
+                        new TextComponentString("Reloaded config."));
+                break;
+            case "stats":
+                for (HookWorld hookWorld : LudicrousHooks.getInstance()
+                        .getHookWorlds().values()) {
+                    if (!hookWorld.getWorld().isRemote) {
+                        sendStats(sender, hookWorld);
+                    }
+                }
+                sendPendingStats(sender,
+                        LudicrousHooks.getInstance().getPendingHookStore());
+                break;
+            case "hooks":
+                if (args.length > 1) {
+                    int dimension = parseInt(args[1]);
+                    World world = DimensionManager.getWorld(dimension);
+                    if (world == null) {
+                        throw new CommandException(
+                                "Dimension " + dimension + " isn't loaded");
+                    }
+                    sendHooks(sender, LudicrousHooks.getInstance()
+                            .getHookWorld(world));
+                    break;
+                }
+                for (HookWorld hookWorld : LudicrousHooks.getInstance()
+                        .getHookWorlds().values()) {
+                    if (!hookWorld.getWorld().isRemote) {
+                        sendHooks(sender, hookWorld);
+                    }
+                }
+                break;
+            default:
+                throw new WrongUsageException(USAGE);
+        }
+    }
+
+    private static void sendHooks(ICommandSender sender, HookWorld hookWorld) {
+        HookRegistry hooks = hookWorld.getHooks();
+        World world = hookWorld.getWorld();
+        sender.addChatMessage(new TextComponentString(
+                String.format("DIM%d: %d hooks",
+                        world.provider.getDimension(), hooks.size())));
+        PlayerIndex players =
+                LudicrousHooks.getInstance().getPlayerIndex(world);
+        for (UUID owner : hooks.getOwners()) {
+            Collection<EntityHook> owned = hooks.getByOwner(owner);
+            long attached =
+                    owned.stream().filter(EntityHook::isAttached).count();
+            EntityPlayer player = players.get(owner);
+            String name = player != null ? player.getName() : owner.toString();
+            sender.addChatMessage(new TextComponentString(
+                    String.format("  %s: %d (%d attached)", name,
+                            owned.size(), attached)));
+        }
+    }
+
+    private static void sendStats(ICommandSender sender, HookWorld hookWorld) {
+        SectionAttachIndex index = hookWorld.getAttachIndex();
+        long lookups = index.getHits() + index.getMisses();
+        double hitRate =
+                lookups == 0 ? 0 : index.getHits() * 100.0 / lookups;
+        sender.addChatMessage(new TextComponentString(String.format(
+                "DIM%d: %d sections (%d bitmaps), %d KiB, "
+                        + "%.1f%% hit rate, %d invalidations",
+                hookWorld.getWorld().provider.getDimension(),
+                index.getSectionCount(), index.getBitmapCount(),
+                index.getMemoryUsage() / 1024, hitRate,
+                index.getInvalidations())));
+        HookTrackingStats tracking = hookWorld.getTrackingStats();
+        EntityTracker tracker =
+                ((WorldServer) hookWorld.getWorld()).getEntityTracker();
+        int trackedPairs = 0;
+        for (EntityHook hook : hookWorld.getHooks().getAll()) {
+            trackedPairs += tracker.getTrackingPlayers(hook).size();
+        }
+        sender.addChatMessage(new TextComponentString(String.format(
+                "  tracking: %d pairs, %d rejected, %d moves skipped, "
+                        + "~%d KiB saved",
+                trackedPairs, tracking.getRejectedPairs(),
+                tracking.getSkippedMoves(), tracking.getBytesSaved() / 1024)));
+        HookMotionSimulator motion = hookWorld.getMotionSimulator();
+        int simulated = motion.getLastPassHooks();
+        sender.addChatMessage(new TextComponentString(String.format(
+                "  server motion: %d hooks, %.2f us/hook last tick",
+                simulated, simulated == 0 ? 0
+                        : motion.getLastPassNanos() / 1000.0 / simulated)));
+    }
+
+    private static void sendPendingStats(ICommandSender sender,
+            PendingHookStore store) {
+        int entries = store.getEntryCount();
+        sender.addChatMessage(new TextComponentString(String.format(
+                "Pending: %d hooks for %d players, %d KiB "
+                        + "(%d bytes/hook), %d evicted",
+                entries, store.getOwnerCount(), store.getMemoryUsage() / 1024,
+                entries == 0 ? 0 : store.getMemoryUsage() / entries,
+                store.getEvictions())));
+    }
+
+    @Override
+    public List<String> getTabCompletionOptions(MinecraftServer server,
+            ICommandSender sender, String[] args, BlockPos pos) {
+        if (args.length == 1) {
+            return getListOfStringsMatchingLastWord(args, "reload",
+                    "stats", "hooks");
+        }
+        return Collections.emptyList();
+    }
+
+}
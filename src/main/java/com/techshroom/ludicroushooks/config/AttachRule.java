@@ -0,0 +1,210 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.config;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.techshroom.ludicroushooks.LudicrousHooks;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.properties.IProperty;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * A single allow/deny entry from the config. Rules come in three forms:
+ * <ul>
+ * <li>{@code block:<id>} or {@code block:<id>[<property>=<value>,...]}</li>
+ * <li>{@code material:<name>}, using the vanilla material names</li>
+ * <li>{@code property:<property>=<value>}, for any block with that value</li>
+ * </ul>
+ * Rules see the state stored in the chunk, not the actual state. Properties
+ * that only the actual state fills in, like fence and wall connections, are
+ * always at their default, so rules on them are rejected.
+ */
+public final class AttachRule implements Predicate<IBlockState> {
+
+    private static final Splitter PROPERTY_SPLITTER =
+            Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter.MapSplitter PROPERTY_MAP_SPLITTER =
+            PROPERTY_SPLITTER.withKeyValueSeparator('=');
+
+    // Materials have no names at runtime, so list the vanilla ones
+    private static final Map<String, Material> MATERIALS =
+            ImmutableMap.<String, Material> builder()
+                    .put("air", Material.AIR).put("grass", Material.GRASS)
+                    .put("ground", Material.GROUND).put("wood", Material.WOOD)
+                    .put("rock", Material.ROCK).put("iron", Material.IRON)
+                    .put("anvil", Material.ANVIL).put("water", Material.WATER)
+                    .put("lava", Material.LAVA).put("leaves", Material.LEAVES)
+                    .put("plants", Material.PLANTS).put("vine", Material.VINE)
+                    .put("sponge", Material.SPONGE)
+                    .put("cloth", Material.CLOTH).put("fire", Material.FIRE)
+                    .put("sand", Material.SAND)
+                    .put("circuits", Material.CIRCUITS)
+                    .put("carpet", Material.CARPET)
+                    .put("glass", Material.GLASS)
+                    .put("redstone_light", Material.REDSTONE_LIGHT)
+                    .put("tnt", Material.TNT).put("coral", Material.CORAL)
+                    .put("ice", Material.ICE)
+                    .put("packed_ice", Material.PACKED_ICE)
+                    .put("snow", Material.SNOW)
+                    .put("crafted_snow", Material.CRAFTED_SNOW)
+                    .put("cactus", Material.CACTUS).put("clay", Material.CLAY)
+                    .put("gourd", Material.GOURD)
+                    .put("dragon_egg", Material.DRAGON_EGG)
+                    .put("portal", Material.PORTAL).put("cake", Material.CAKE)
+                    .put("web", Material.WEB).put("piston", Material.PISTON)
+                    .put("barrier", Material.BARRIER)
+                    .put("structure_void", Material.STRUCTURE_VOID)
+                    .build();
+
+    /**
+     * Parses a rule.
+     *
+     * @throws IllegalArgumentException
+     *             if the rule is malformed or names something unknown
+     */
+    public static AttachRule parse(String rule) {
+        int split = rule.indexOf(':');
+        checkArgument(split != -1, "missing rule type in '%s'", rule);
+        String type = rule.substring(0, split).trim();
+        String value = rule.substring(split + 1).trim();
+        switch (type) {
+            case "block":
+                return checkStoredStates(parseBlock(rule, value));
+            case "material":
+                Material material = MATERIALS.get(value);
+                checkArgument(material != null, "unknown material '%s'",
+                        value);
+                return new AttachRule(rule, null, material,
+                        ImmutableMap.of());
+            case "property":
+                Map<String, String> properties =
+                        PROPERTY_MAP_SPLITTER.split(value);
+                checkArgument(!properties.isEmpty(), "no properties in '%s'",
+                        rule);
+                return checkStoredStates(
+                        new AttachRule(rule, null, null, properties));
+            default:
+                throw new IllegalArgumentException(
+                        "unknown rule type '" + type + "'");
+        }
+    }
+
+    private static AttachRule parseBlock(String rule, String value) {
+        Map<String, String> properties = ImmutableMap.of();
+        int propStart = value.indexOf('[');
+        if (propStart != -1) {
+            checkArgument(value.endsWith("]"), "unclosed properties in '%s'",
+                    rule);
+            properties = PROPERTY_MAP_SPLITTER
+                    .split(value.substring(propStart + 1, value.length() - 1));
+            value = value.substring(0, propStart);
+        }
+        ResourceLocation id = new ResourceLocation(value);
+        checkArgument(Block.REGISTRY.containsKey(id), "unknown block '%s'",
+                id);
+        return new AttachRule(rule, Block.REGISTRY.getObject(id), null,
+                properties);
+    }
+
+    /**
+     * Rejects rules that only match actual states, as the table is built
+     * from the states stored in chunks.
+     */
+    private static AttachRule checkStoredStates(AttachRule rule) {
+        if (rule.properties.isEmpty()) {
+            return rule;
+        }
+        for (IBlockState state : Block.BLOCK_STATE_IDS) {
+            if (rule.test(state)) {
+                return rule;
+            }
+        }
+        for (Block block : Block.REGISTRY) {
+            for (IBlockState state : block.getBlockState().getValidStates()) {
+                checkArgument(!rule.test(state), "'%s' only matches "
+                        + "actual states, which hooks don't see", rule);
+            }
+        }
+        // may be for a block that isn't registered yet
+        LudicrousHooks.LOGGER
+                .warn("Attach rule '" + rule + "' matches no block state");
+        return rule;
+    }
+
+    private static <T extends Comparable<T>> String valueName(
+            IBlockState state, IProperty<T> property) {
+        return property.getName(state.getValue(property));
+    }
+
+    private final String source;
+    private final Block block;
+    private final Material material;
+    private final Map<String, String> properties;
+
+    private AttachRule(String source, Block block, Material material,
+            Map<String, String> properties) {
+        this.source = source;
+        this.block = block;
+        this.material = material;
+        this.properties = ImmutableMap.copyOf(properties);
+    }
+
+    @Override
+    public boolean test(IBlockState state) {
+        if (this.block != null && state.getBlock() != this.block) {
+            return false;
+        }
+        if (this.material != null && state.getMaterial() != this.material) {
+            return false;
+        }
+        int matched = 0;
+        for (IProperty<?> property : state.getPropertyNames()) {
+            String expected = this.properties.get(property.getName());
+            if (expected == null) {
+                continue;
+            }
+            if (!expected.equals(valueName(state, property))) {
+                return false;
+            }
+            matched++;
+        }
+        return matched == this.properties.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+
+}
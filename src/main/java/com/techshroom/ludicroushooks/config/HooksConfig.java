@@ -0,0 +1,141 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.config;
+
+import java.io.File;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.techshroom.ludicroushooks.LudicrousHooks;
+
+import net.minecraftforge.common.config.Configuration;
+
+/**
+ * The mod's config file. Values are read once on {@link #load()}, call it
+ * again to pick up changes made to the file.
+ */
+public class HooksConfig {
+
+    private static final String CATEGORY_ATTACH = "attach";
+    private static final String CATEGORY_PENDING = "pending";
+    private static final String CATEGORY_MOTION = "motion";
+
+    private final Configuration config;
+    private List<AttachRule> attachAllow = ImmutableList.of();
+    private List<AttachRule> attachDeny = ImmutableList.of();
+    private int pendingMaxPerPlayer;
+    private int pendingMemoryBudgetKiB;
+    private int pendingMaxAgeDays;
+    private int pendingRestorePerTick;
+    private boolean serverMotion;
+
+    public HooksConfig(File file) {
+        this.config = new Configuration(file);
+    }
+
+    public void load() {
+        this.config.load();
+        this.config.setCategoryComment(CATEGORY_ATTACH,
+                "Rules for what hooks can attach to. Rules look like "
+                        + "'block:minecraft:stone_slab[half=top]', "
+                        + "'material:glass' or 'property:half=top'. "
+                        + "Properties that are only in the actual state, "
+                        + "like fence connections, can't be used.");
+        this.attachAllow = parseRules(this.config.getStringList("allow",
+                CATEGORY_ATTACH, new String[0],
+                "States hooks can attach to, on top of full cubes and "
+                        + "opaque blocks."));
+        this.attachDeny = parseRules(this.config.getStringList("deny",
+                CATEGORY_ATTACH, new String[0],
+                "States hooks can't attach to. Overrides 'allow'."));
+        this.config.setCategoryComment(CATEGORY_PENDING,
+                "Limits for hooks kept for offline players, restored when "
+                        + "they log back in.");
+        this.pendingMaxPerPlayer = this.config.getInt("maxPerPlayer",
+                CATEGORY_PENDING, 16, 1, Integer.MAX_VALUE,
+                "Most hooks kept for one player, older ones are dropped.");
+        this.pendingMemoryBudgetKiB = this.config.getInt("memoryBudgetKiB",
+                CATEGORY_PENDING, 8192, 1, Integer.MAX_VALUE,
+                "Roughly how much memory pending hooks may use. Players who "
+                        + "left longest ago are dropped first.");
+        this.pendingMaxAgeDays = this.config.getInt("maxAgeDays",
+                CATEGORY_PENDING, 30, 0, Integer.MAX_VALUE,
+                "Days to keep a player's hooks for, 0 to keep them forever.");
+        this.pendingRestorePerTick = this.config.getInt("restorePerTick",
+                CATEGORY_PENDING, 20, 1, Integer.MAX_VALUE,
+                "Most hooks spawned back in per world per tick. Players take "
+                        + "turns.");
+        this.serverMotion = this.config.getBoolean("serverSide",
+                CATEGORY_MOTION, false,
+                "Move hooked players on the server and send them their "
+                        + "velocity, instead of trusting their client. "
+                        + "Applies to hooks attached after the change.");
+        if (this.config.hasChanged()) {
+            this.config.save();
+        }
+    }
+
+    private static List<AttachRule> parseRules(String[] rules) {
+        ImmutableList.Builder<AttachRule> parsed = ImmutableList.builder();
+        for (String rule : rules) {
+            try {
+                parsed.add(AttachRule.parse(rule));
+            } catch (IllegalArgumentException e) {
+                LudicrousHooks.LOGGER.warn("Ignoring attach rule '" + rule
+                        + "': " + e.getMessage());
+            }
+        }
+        return parsed.build();
+    }
+
+    public List<AttachRule> getAttachAllow() {
+        return this.attachAllow;
+    }
+
+    public List<AttachRule> getAttachDeny() {
+        return this.attachDeny;
+    }
+
+    public int getPendingMaxPerPlayer() {
+        return this.pendingMaxPerPlayer;
+    }
+
+    public int getPendingMemoryBudgetKiB() {
+        return this.pendingMemoryBudgetKiB;
+    }
+
+    public int getPendingMaxAgeDays() {
+        return this.pendingMaxAgeDays;
+    }
+
+    public int getPendingRestorePerTick() {
+        return this.pendingRestorePerTick;
+    }
+
+    public boolean isServerMotion() {
+        return this.serverMotion;
+    }
+
+}
@@ -24,67 +24,146 @@
  */
 package com.techshroom.ludicroushooks.entity;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import com.techshroom.ludicroushooks.LudicrousHooks;
 import com.techshroom.ludicroushooks.VecUtil;
 import com.techshroom.ludicroushooks.item.ItemGrappleGun;
 import com.techshroom.ludicroushooks.movement.MotionController;
+import com.techshroom.ludicroushooks.targeting.VoxelRaycast;
+import com.techshroom.ludicroushooks.world.HookPredictions;
+import com.techshroom.ludicroushooks.world.HookTimingWheel;
+import com.techshroom.ludicroushooks.world.HookTrackerRange;
+import com.techshroom.ludicroushooks.world.HookWorld;
 
+import io.netty.buffer.ByteBuf;
 import net.minecraft.block.Block;
-import net.minecraft.block.state.IBlockState;
+import net.minecraft.client.multiplayer.WorldClient;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityTracker;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.entity.player.InventoryPlayer;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagDouble;
 import net.minecraft.nbt.NBTTagList;
-import net.minecraft.network.datasync.DataParameter;
-import net.minecraft.network.datasync.DataSerializers;
-import net.minecraft.network.datasync.EntityDataManager;
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.EnumHand;
+import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.RayTraceResult;
-import net.minecraft.util.math.RayTraceResult.Type;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.util.Constants.NBT;
+import net.minecraftforge.fml.common.registry.IEntityAdditionalSpawnData;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
-public abstract class EntityHook extends Entity {
-
-    private static final DataParameter<Boolean> DRAG_PLAYER = EntityDataManager
-            .createKey(EntityHook.class, DataSerializers.BOOLEAN);
-    private static final DataParameter<Vec3d> ATTACH_POSITION =
-            EntityDataManager.createKey(EntityHook.class,
-                    Vec3dDataSerializer.INSTANCE);
-    private static final DataParameter<Long> TRAVEL_TIME = EntityDataManager
-            .createKey(EntityHook.class, LongDataSerializer.INSTANCE);
-    private static final DataParameter<UUID> OWNER = EntityDataManager
-            .createKey(EntityHook.class, UUIDDataSerializer.INSTANCE);
+public abstract class EntityHook extends Entity
+        implements IEntityAdditionalSpawnData {
+
+    /**
+     * Tracking range the hooks are registered with. It covers the longest
+     * rope plus the largest entity view distance, players in range only
+     * track a hook if {@link #isSpectatedByPlayer} agrees.
+     */
+    public static final int TRACKING_RANGE = 1024 + 32 * 16;
+    public static final int UPDATE_FREQUENCY = 20;
+    // Clients put hooks at their owner themselves, so once a hook has
+    // settled the server only follows the owner closely enough for tracking.
+    private static final int SETTLE_TICKS = 40;
+    private static final double SETTLED_FOLLOW_DISTANCE_SQ = 8 * 8;
+    // the smallest move the entity tracker sends, in blocks squared
+    private static final double TRACKED_MOVE_SQ = 128.0 / (4096 * 4096);
+    // how long a predicted hook waits for the server's hook
+    private static final long PREDICTION_TIMEOUT_NANOS =
+            TimeUnit.SECONDS.toNanos(2);
     private static final long NANOS_TO_TRAVEL_PER_BLOCK =
             TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long NANOS_PER_TICK =
+            TimeUnit.MILLISECONDS.toNanos(50);
     private static final double HOOK_MAX_DIST = 1024.0;
+    /**
+     * How many voxels past the first the attachment search looks at. This is
+     * where {@link World#rayTraceBlocks} gave up, which limits how far a hook
+     * can attach to between 116 and 201 blocks, depending on the direction.
+     */
+    private static final int HOOK_MAX_VOXELS = 201;
+    /**
+     * How far the attachment search advances each tick. This matches the
+     * distance the hook travels in a tick, so the search always stays ahead
+     * of the hook.
+     */
+    private static final double SEARCH_BLOCKS_PER_TICK =
+            (double) NANOS_PER_TICK / NANOS_TO_TRAVEL_PER_BLOCK;
+
+    /**
+     * Fires a hook on the server. {@code shot} is the number the client gave
+     * its prediction of this shot, or 0 if it didn't predict one.
+     */
+    public static EntityHook shoot(EntityPlayer shooter, EnumHand hand,
+            Function<World, EntityHook> constr, int shot) {
+        EntityHook hook = aim(shooter, hand, constr);
+        hook.shot = shot;
+        hook.startAttachmentSearch();
+        hook.getEntityWorld().spawnEntityInWorld(hook);
+        return hook;
+    }
 
-    public static EntityHook shoot(EntityPlayer shooter,
+    /**
+     * Fires a client-only copy of the hook the server is about to shoot, so
+     * the flight starts without waiting for the server. The real hook takes
+     * over from it when it arrives. If it doesn't arrive in time, the copy is
+     * removed and the gun is loaded again. The gun tells the server to fire
+     * with the prediction's {@link #getShot() shot number}.
+     */
+    @SideOnly(Side.CLIENT)
+    public static EntityHook predict(EntityPlayer shooter, EnumHand hand,
+            Function<World, EntityHook> constr) {
+        EntityHook hook = aim(shooter, hand, constr);
+        hook.predicted = true;
+        hook.predictAttachment();
+        hook.launchNanos = System.nanoTime();
+        HookPredictions predictions = LudicrousHooks.getInstance()
+                .getHookWorld(shooter.worldObj).getPredictions();
+        hook.shot = predictions.nextShot();
+        ((WorldClient) shooter.worldObj)
+                .addEntityToWorld(predictions.nextEntityId(), hook);
+        predictions.add(hook);
+        return hook;
+    }
+
+    private static EntityHook aim(EntityPlayer shooter, EnumHand hand,
             Function<World, EntityHook> constr) {
         EntityHook hook = constr.apply(shooter.worldObj);
         hook.setOwner(shooter.getUniqueID());
+        ItemStack gun = shooter.getHeldItem(hand);
+        hook.sourceSlot = getInventorySlot(shooter.inventory, hand);
+        hook.sourceItem = gun == null ? null : gun.getItem();
         hook.setLocationAndAngles(shooter.posX,
                 shooter.posY + shooter.getEyeHeight(), shooter.posZ,
                 shooter.rotationYaw, shooter.rotationPitch);
-        hook.calculateAttachmentValues();
-        hook.getEntityWorld().spawnEntityInWorld(hook);
         return hook;
     }
 
+    /**
+     * Returns the {@link InventoryPlayer} slot index of the stack in the
+     * given hand.
+     */
+    public static int getInventorySlot(InventoryPlayer inv, EnumHand hand) {
+        if (hand == EnumHand.MAIN_HAND) {
+            return inv.currentItem;
+        }
+        // offhand slots come after main and armor
+        return inv.mainInventory.length + inv.armorInventory.length;
+    }
+
     /**
      * Returns the location of the tip of the grapple gun for the firing entity.
      */
@@ -125,12 +204,42 @@ public abstract class EntityHook extends Entity {
     // }
 
     private BlockPos hookedBlockPos;
+    // where the gun that fired this hook was, -1 if unknown
+    private int sourceSlot = -1;
+    private Item sourceItem;
+    // the client's number for the shot that fired this hook, 0 if none
+    private int shot;
+    private boolean returnOnDeath = true;
+    private VoxelRaycast attachmentSearch;
+    private final HookTimingWheel.Timeout travelTimeout =
+            new HookTimingWheel.Timeout(this::onTravelFinished);
+    private long launchTick;
+    private boolean travelNeedsScheduling;
+    // client only
+    private long launchNanos = -1;
     private long targetNanos = -1;
-    private boolean attached;
     private boolean targetExists;
-    private EntityPlayer cachedOwner;
     private boolean positionFromSpawn;
     private boolean motionAdded;
+    private boolean predicted;
+    private boolean reconciled;
+    // synced by the spawn data and HookEventBatcher
+    private HookState state = HookState.EMPTY;
+    private int stateChangedTick;
+    // entity IDs of players in range that the hook isn't relevant to
+    private Set<Integer> irrelevantTo;
+    // where the owner was at the last position update the hook skipped
+    private double skippedFromX;
+    private double skippedFromY;
+    private double skippedFromZ;
+    private Vec3d pullFrom;
+    private float pullYaw;
+    private float pullPitch;
+    private Vec3d pullPosition;
+    private HookOwner resolvedFrom;
+    private UUID resolvedOwner;
+    // between being added to a server world and leaving it again
+    private boolean inWorld;
 
     public EntityHook(World worldIn) {
         super(worldIn);
@@ -140,78 +249,234 @@ public abstract class EntityHook extends Entity {
     protected void entityInit() {
         this.ignoreFrustumCheck = true;
         this.noClip = true;
-        getDataManager().register(DRAG_PLAYER, false);
-        getDataManager().register(ATTACH_POSITION, null);
-        getDataManager().register(TRAVEL_TIME, 0L);
-        getDataManager().register(OWNER, null);
         setSize(0.1f, 0.1f);
     }
 
-    private void calculateAttachmentValues() {
-        EntityDataManager dm = getDataManager();
-        Pair<Boolean, Vec3d> attachInfo = checkAttachment();
-        Vec3d attachPos = attachInfo.getRight();
-        this.targetExists = attachInfo.getLeft();
-        if (attachPos == null) {
-            attachPos = getPositionVector().add(
-                    Vec3d.fromPitchYaw(this.rotationPitch, this.rotationYaw)
-                            .scale(HOOK_MAX_DIST));
-        }
-        long travelTime = (long) (NANOS_TO_TRAVEL_PER_BLOCK
-                * attachPos.distanceTo(getPositionVector()));
-        dm.set(TRAVEL_TIME, travelTime);
-        dm.set(ATTACH_POSITION, attachPos);
-        this.targetNanos = System.nanoTime() + travelTime;
-    }
-
-    private Pair<Boolean, Vec3d> checkAttachment() {
-        Vec3d vec = getPositionVector();
-        RayTraceResult trace =
-                getEntityWorld().rayTraceBlocks(vec,
-                        vec.add(Vec3d.fromPitchYaw(this.rotationPitch,
-                                this.rotationYaw).scale(HOOK_MAX_DIST)),
-                        false, true, false);
-        if (trace != null && trace.typeOfHit == Type.BLOCK) {
-            IBlockState state =
-                    getEntityWorld().getBlockState(trace.getBlockPos());
-            this.hookedBlockPos = trace.getBlockPos();
-            return Pair.of(LudicrousHooks.getInstance().canAttachTo(state),
-                    trace.hitVec);
-        }
-        return Pair.of(false, null);
+    private void startAttachmentSearch() {
+        Vec3d start = getPositionVector();
+        Vec3d direction =
+                Vec3d.fromPitchYaw(this.rotationPitch, this.rotationYaw);
+        this.attachmentSearch = new VoxelRaycast(start.xCoord, start.yCoord,
+                start.zCoord, direction.xCoord, direction.yCoord,
+                direction.zCoord, HOOK_MAX_DIST, HOOK_MAX_VOXELS,
+                LudicrousHooks.getInstance().getHookWorld(getEntityWorld())
+                        .getAttachIndex());
+        this.launchTick = getEntityWorld().getTotalWorldTime();
+        // Fly to max range until the search says otherwise
+        setAttachmentValues(false, start.add(direction.scale(HOOK_MAX_DIST)),
+                HOOK_MAX_DIST);
+        advanceAttachmentSearch();
+    }
+
+    /**
+     * Finds the attach position in one go, with the same search the server
+     * spreads over ticks.
+     */
+    private void predictAttachment() {
+        Vec3d start = getPositionVector();
+        Vec3d direction =
+                Vec3d.fromPitchYaw(this.rotationPitch, this.rotationYaw);
+        VoxelRaycast search = new VoxelRaycast(start.xCoord, start.yCoord,
+                start.zCoord, direction.xCoord, direction.yCoord,
+                direction.zCoord, HOOK_MAX_DIST, HOOK_MAX_VOXELS,
+                LudicrousHooks.getInstance().getHookWorld(getEntityWorld())
+                        .getAttachIndex());
+        search.advance(getEntityWorld(), HOOK_MAX_DIST);
+        if (search.isHit()) {
+            setState(getState().withTarget(
+                    new Vec3d(search.getHitX(), search.getHitY(),
+                            search.getHitZ()),
+                    travelTime(search.getHitDistance())));
+        } else {
+            setState(getState().withTarget(
+                    start.add(direction.scale(HOOK_MAX_DIST)),
+                    travelTime(HOOK_MAX_DIST)));
+        }
+    }
+
+    private static long travelTime(double distance) {
+        return (long) (NANOS_TO_TRAVEL_PER_BLOCK * distance);
+    }
+
+    private void advanceAttachmentSearch() {
+        VoxelRaycast search = this.attachmentSearch;
+        if (!search.advance(getEntityWorld(), SEARCH_BLOCKS_PER_TICK)) {
+            return;
+        }
+        this.attachmentSearch = null;
+        if (search.isHit()) {
+            this.hookedBlockPos = new BlockPos(search.getBlockX(),
+                    search.getBlockY(), search.getBlockZ());
+            setAttachmentValues(
+                    LudicrousHooks.getInstance().canAttachTo(search.getState()),
+                    new Vec3d(search.getHitX(), search.getHitY(),
+                            search.getHitZ()),
+                    search.getHitDistance());
+        }
+    }
+
+    private void setAttachmentValues(boolean targetExists, Vec3d attachPos,
+            double distance) {
+        this.targetExists = targetExists;
+        long travelTime = travelTime(distance);
+        setState(getState().withTarget(attachPos, travelTime));
+        scheduleTravelEnd(travelTime);
+    }
+
+    private HookTimingWheel getTimingWheel() {
+        return LudicrousHooks.getInstance().getHookWorld(getEntityWorld())
+                .getTimingWheel();
+    }
+
+    private void scheduleTravelEnd(long travelTime) {
+        // round up, so the hook never attaches before it visually arrives
+        long travelTicks = (travelTime + NANOS_PER_TICK - 1) / NANOS_PER_TICK;
+        getTimingWheel().schedule(this.travelTimeout,
+                this.launchTick + travelTicks);
+    }
+
+    /**
+     * Called when the hook is added to a server world. State set before
+     * this, when loading or aiming, goes out with the spawn data.
+     */
+    public void onAddedToWorld(HookWorld hookWorld) {
+        this.inWorld = true;
+        HookTrackerRange.fit((WorldServer) getEntityWorld(), this);
+        if (getState().isServerMotion()) {
+            hookWorld.getMotionSimulator().add(this);
+        }
+    }
+
+    /**
+     * Called when the hook leaves its world, which happens without
+     * {@link #setDead()} when its chunk unloads.
+     */
+    public void onRemovedFromWorld(HookWorld hookWorld) {
+        this.inWorld = false;
+        hookWorld.getTimingWheel().cancel(this.travelTimeout);
+        hookWorld.getMotionSimulator().remove(this);
+    }
+
+    private void onTravelFinished() {
+        if (this.isDead || isAttached()) {
+            return;
+        }
+        if (this.attachmentSearch != null) {
+            // can't decide yet, check again next tick
+            getTimingWheel().schedule(this.travelTimeout,
+                    getTimingWheel().getTick() + 1);
+            return;
+        }
+        if (!this.targetExists) {
+            killWithEffects();
+        } else {
+            setAttached(true);
+        }
+    }
+
+    public HookState getState() {
+        return this.state;
+    }
+
+    private void setState(HookState state) {
+        if (state.equals(this.state)) {
+            return;
+        }
+        this.state = state;
+        this.stateChangedTick = this.ticksExisted;
+        if (this.inWorld) {
+            HookWorld hookWorld =
+                    LudicrousHooks.getInstance().getHookWorld(getEntityWorld());
+            hookWorld.getEventBatcher().stateChanged(this);
+            // the rope may reach somewhere else now
+            HookTrackerRange.fit((WorldServer) getEntityWorld(), this);
+            if (state.isServerMotion()) {
+                hookWorld.getMotionSimulator().add(this);
+            } else {
+                hookWorld.getMotionSimulator().remove(this);
+            }
+        }
+    }
+
+    /**
+     * Replaces the state with one received from the server.
+     */
+    @SideOnly(Side.CLIENT)
+    public void applyState(HookState state) {
+        this.state = state;
     }
 
     public void setOwner(UUID owner) {
-        getDataManager().set(OWNER, owner);
-        this.cachedOwner = null;
+        if (owner == null) {
+            setState(getState().withOwner(null));
+            return;
+        }
+        EntityPlayer player = LudicrousHooks.getInstance()
+                .getPlayerIndex(getEntityWorld()).get(owner);
+        setState(getState().withOwner(HookOwner.of(owner,
+                player != null ? player.getEntityId() : HookOwner.UNTRACKED)));
     }
 
     public UUID getOwner() {
-        return getDataManager().get(OWNER);
+        HookOwner owner = getState().getOwner();
+        if (owner == null) {
+            return null;
+        }
+        if (owner.getId() != null) {
+            return owner.getId();
+        }
+        // client side, only the entity ID was synced
+        if (owner != this.resolvedFrom) {
+            Entity entity =
+                    getEntityWorld().getEntityByID(owner.getEntityId());
+            if (!(entity instanceof EntityPlayer)) {
+                return null;
+            }
+            this.resolvedFrom = owner;
+            this.resolvedOwner = entity.getUniqueID();
+        }
+        return this.resolvedOwner;
     }
 
     public EntityPlayer getOwnerEntity() {
-        if (this.cachedOwner == null && getOwner() != null) {
-            this.cachedOwner =
-                    getEntityWorld().getPlayerEntityByUUID(getOwner());
+        UUID owner = getOwner();
+        if (owner == null) {
+            return null;
         }
-        return this.cachedOwner;
+        EntityPlayer player = LudicrousHooks.getInstance()
+                .getPlayerIndex(getEntityWorld()).get(owner);
+        // owners in other worlds don't count
+        return player != null && player.worldObj == getEntityWorld() ? player
+                : null;
+    }
+
+    /**
+     * Returns the inventory slot the gun was fired from, or -1 if unknown.
+     */
+    public int getSourceSlot() {
+        return this.sourceSlot;
+    }
+
+    public Item getSourceItem() {
+        return this.sourceItem;
     }
 
     public boolean isAttached() {
-        return this.attached;
+        return getState().isAttached();
     }
 
     public void setAttached(boolean attached) {
-        this.attached = attached;
-        getDataManager().set(DRAG_PLAYER, attached);
+        boolean serverMotion = attached && !getEntityWorld().isRemote
+                && LudicrousHooks.getInstance().isServerMotion();
+        setState(getState().withAttached(attached)
+                .withServerMotion(serverMotion));
     }
 
     /**
      * Attach position is the final position of the entity
      */
     public Vec3d getAttachPosition() {
-        return getDataManager().get(ATTACH_POSITION);
+        return getState().getAttachPosition();
     }
 
     /**
@@ -219,11 +484,24 @@ public abstract class EntityHook extends Entity {
      * the player is pulled towards.
      */
     public Vec3d getPullPosition() {
-        return getAttachPosition().add(VecUtil.setLength(getLook(1.0F), -0.25));
+        Vec3d attachPos = getAttachPosition();
+        if (attachPos == null) {
+            return null;
+        }
+        // controllers ask every tick, only recompute when something changed
+        if (attachPos != this.pullFrom || this.rotationYaw != this.pullYaw
+                || this.rotationPitch != this.pullPitch) {
+            this.pullFrom = attachPos;
+            this.pullYaw = this.rotationYaw;
+            this.pullPitch = this.rotationPitch;
+            this.pullPosition =
+                    attachPos.add(VecUtil.setLength(getLook(1.0F), -0.25));
+        }
+        return this.pullPosition;
     }
 
     public long getTravelTime() {
-        return getDataManager().get(TRAVEL_TIME);
+        return getState().getTravelTime();
     }
 
     // Specialized client-only version
@@ -235,10 +513,21 @@ public abstract class EntityHook extends Entity {
     @Override
     public void setDead() {
         super.setDead();
+        HookWorld hookWorld = LudicrousHooks.getInstance()
+                .getExistingHookWorld(getEntityWorld());
+        if (hookWorld == null) {
+            // the world is unloading, don't bring its state back
+            return;
+        }
+        hookWorld.getHooks().remove(this);
+        if (!getEntityWorld().isRemote) {
+            hookWorld.getTimingWheel().cancel(this.travelTimeout);
+            hookWorld.getMotionSimulator().remove(this);
+        }
         if (getOwner() != null) {
             if (getEntityWorld().isRemote) {
                 LudicrousHooks.getInstance().removeActiveHook(getOwner(), this);
-            } else {
+            } else if (this.returnOnDeath) {
                 returnToStack();
             }
         }
@@ -246,31 +535,44 @@ public abstract class EntityHook extends Entity {
     }
 
     private void returnToStack() {
+        markGun(ItemGrappleGun.SHOT, ItemGrappleGun.IN_HAND);
+    }
+
+    private void markGun(int from, int to) {
         EntityPlayer owner = getOwnerEntity();
         if (owner == null) {
             return;
         }
+        InventoryPlayer inv = owner.inventory;
+        // Check the slot it was fired from, it usually hasn't moved
+        if (this.sourceSlot >= 0 && this.sourceSlot < inv.getSizeInventory()
+                && markGun(inv.getStackInSlot(this.sourceSlot), from, to)) {
+            return;
+        }
         // Check for holding
-        if (returnToStack(owner.getHeldItem(EnumHand.MAIN_HAND))) {
+        if (markGun(owner.getHeldItem(EnumHand.MAIN_HAND), from, to)) {
             return;
         }
-        if (returnToStack(owner.getHeldItem(EnumHand.OFF_HAND))) {
+        if (markGun(owner.getHeldItem(EnumHand.OFF_HAND), from, to)) {
             return;
         }
-        InventoryPlayer inv = owner.inventory;
         // Check inventory
         for (int i = 0; i < inv.mainInventory.length; i++) {
-            if (returnToStack(inv.mainInventory[i])) {
+            if (markGun(inv.mainInventory[i], from, to)) {
                 return;
             }
         }
     }
 
-    private boolean returnToStack(ItemStack stack) {
-        if (stack != null && stack.getItem() == LudicrousHooks.MOTOR_GRAPPLE_GUN
-                && stack.getMetadata() == ItemGrappleGun.SHOT) {
-            stack.setItemDamage(ItemGrappleGun.IN_HAND);
-            stack.setTagCompound(null);
+    private boolean markGun(ItemStack stack, int from, int to) {
+        if (stack == null || !(stack.getItem() instanceof ItemGrappleGun)) {
+            return false;
+        }
+        if (this.sourceItem != null && stack.getItem() != this.sourceItem) {
+            return false;
+        }
+        if (stack.getMetadata() == from) {
+            stack.setItemDamage(to);
             return true;
         }
         return false;
@@ -284,38 +586,84 @@ public abstract class EntityHook extends Entity {
             EntityPlayer e = getOwnerEntity();
             if (e == null) {
                 if (!getEntityWorld().isRemote) {
-                    NBTTagCompound data = new NBTTagCompound();
-                    writeToNBT(data);
-                    LudicrousHooks.getInstance().addPendingHook(owner, data);
+                    NBTTagCompound data = removeForRestore();
+                    if (data != null) {
+                        LudicrousHooks.getInstance().addPendingHook(owner,
+                                data);
+                    }
                 }
-                setDead();
+                // clients keep hooks of owners they don't track, the server
+                // removes them when the owner leaves
                 return;
             }
+            if (!getEntityWorld().isRemote && getState().getOwner()
+                    .getEntityId() != e.getEntityId()) {
+                // owner logged back in, or wasn't online when we loaded
+                setState(getState()
+                        .withOwner(HookOwner.of(owner, e.getEntityId())));
+            }
             // Note: this position is not intended to sync
-            this.lastTickPosX = this.prevPosX = this.posX = e.posX;
-            this.lastTickPosY = this.prevPosY = this.posY = e.posY;
-            this.lastTickPosZ = this.prevPosZ = this.posZ = e.posZ;
+            if (getEntityWorld().isRemote || isFollowingClosely(e)) {
+                this.lastTickPosX = this.prevPosX = this.posX = e.posX;
+                this.lastTickPosY = this.prevPosY = this.posY = e.posY;
+                this.lastTickPosZ = this.prevPosZ = this.posZ = e.posZ;
+                setSkippedFrom(e);
+            } else if (this.ticksExisted % UPDATE_FREQUENCY == 0) {
+                // only count updates the tracker would actually have sent
+                double dx = e.posX - this.skippedFromX;
+                double dy = e.posY - this.skippedFromY;
+                double dz = e.posZ - this.skippedFromZ;
+                if (dx * dx + dy * dy + dz * dz >= TRACKED_MOVE_SQ) {
+                    HookWorld hookWorld = LudicrousHooks.getInstance()
+                            .getHookWorld(getEntityWorld());
+                    hookWorld.getTrackingStats()
+                            .skippedMove(((WorldServer) getEntityWorld())
+                                    .getEntityTracker()
+                                    .getTrackingPlayers(this).size());
+                    setSkippedFrom(e);
+                }
+            }
         }
         if (!getEntityWorld().isRemote) {
             if (owner == null) {
                 setDead();
                 return;
             }
-            if (!isAttached()) {
-                if (System.nanoTime() >= this.targetNanos) {
-                    if (!this.targetExists) {
-                        killWithEffects();
-                    } else {
-                        setAttached(true);
-                    }
+            if (this.attachmentSearch != null) {
+                advanceAttachmentSearch();
+            }
+            if (this.travelNeedsScheduling) {
+                // loaded from NBT, start timing once we're in the world
+                this.travelNeedsScheduling = false;
+                if (!isAttached()) {
+                    this.launchTick = getEntityWorld().getTotalWorldTime();
+                    scheduleTravelEnd(getTravelTime());
                 }
             }
         } else {
-            long travelTime;
-            if (this.targetNanos == -1 && (travelTime = getTravelTime()) != 0) {
-                this.targetNanos = System.nanoTime() + travelTime;
+            if (this.predicted) {
+                if (System.nanoTime() - this.launchNanos
+                        > PREDICTION_TIMEOUT_NANOS) {
+                    // the server never fired, undo the shot
+                    returnToStack();
+                    LudicrousHooks.getInstance()
+                            .getHookWorld(getEntityWorld()).getPredictions()
+                            .expire(this);
+                    setDead();
+                    return;
+                }
+            } else if (!this.reconciled) {
+                this.reconciled = true;
+                reconcile(owner);
+            }
+            if (this.launchNanos == -1 && getTravelTime() != 0) {
+                this.launchNanos = System.nanoTime();
+            }
+            if (this.launchNanos != -1) {
+                // Travel time shortens once the server finds the target
+                this.targetNanos = this.launchNanos + getTravelTime();
             }
-            if (getDataManager().get(DRAG_PLAYER)
+            if (isAttached() && !getState().isServerMotion()
                     && LudicrousHooks.getProxy().thisClientIsUUID(owner)) {
                 if (!this.motionAdded) {
                     // Initialize connection here
@@ -328,6 +676,113 @@ public abstract class EntityHook extends Entity {
         }
     }
 
+    private void setSkippedFrom(EntityPlayer owner) {
+        this.skippedFromX = owner.posX;
+        this.skippedFromY = owner.posY;
+        this.skippedFromZ = owner.posZ;
+    }
+
+    private boolean isFollowingClosely(EntityPlayer owner) {
+        if (this.ticksExisted - this.stateChangedTick < SETTLE_TICKS) {
+            return true;
+        }
+        return getDistanceSqToEntity(owner) > SETTLED_FOLLOW_DISTANCE_SQ;
+    }
+
+    /**
+     * Tracks the hook for its owner, and for players whose view distance
+     * reaches the rope between the owner and the attach position.
+     */
+    @Override
+    public boolean isSpectatedByPlayer(EntityPlayerMP player) {
+        EntityPlayer owner = getOwnerEntity();
+        if (owner == null || owner == player) {
+            return true;
+        }
+        Vec3d end = getAttachPosition();
+        if (end == null) {
+            end = owner.getPositionVector();
+        }
+        double range = player.getServerWorld().getMinecraftServer()
+                .getPlayerList().getEntityViewDistance();
+        boolean relevant = VecUtil.horizontalDistanceSqToSegment(player.posX,
+                player.posZ, owner.posX, owner.posZ, end.xCoord,
+                end.zCoord) <= range * range;
+        if (relevant) {
+            if (this.irrelevantTo != null) {
+                this.irrelevantTo.remove(player.getEntityId());
+            }
+            EntityTracker tracker = player.getServerWorld().getEntityTracker();
+            // the spawn data has the owner's entity ID, which this player
+            // can't resolve
+            if (!tracker.getTrackingPlayers(owner).contains(player)
+                    && !tracker.getTrackingPlayers(this).contains(player)) {
+                LudicrousHooks.getInstance().getHookWorld(getEntityWorld())
+                        .getEventBatcher().ownerUnresolved(this, player);
+            }
+        } else {
+            if (this.irrelevantTo == null) {
+                this.irrelevantTo = new HashSet<>();
+            }
+            if (this.irrelevantTo.add(player.getEntityId())) {
+                LudicrousHooks.getInstance().getHookWorld(getEntityWorld())
+                        .getTrackingStats().rejectedPair();
+            }
+        }
+        return relevant;
+    }
+
+    /**
+     * Drops what the hook remembers about a player that left the world.
+     */
+    public void forgetPlayer(int entityId) {
+        if (this.irrelevantTo != null) {
+            this.irrelevantTo.remove(entityId);
+        }
+    }
+
+    /**
+     * Takes over from this client's prediction of this hook, if there is one.
+     * The flight continues from when the prediction was fired, towards the
+     * server's attach position. If that differs from the predicted one, the
+     * hook moves over to it. If the prediction already timed out, the gun it
+     * loaded again is marked as shot.
+     */
+    @SideOnly(Side.CLIENT)
+    private void reconcile(UUID owner) {
+        if (owner == null
+                || !LudicrousHooks.getProxy().thisClientIsUUID(owner)) {
+            return;
+        }
+        EntityHook prediction = LudicrousHooks.getInstance()
+                .getHookWorld(getEntityWorld()).getPredictions().claim(this);
+        if (prediction == null) {
+            return;
+        }
+        if (prediction.isDead) {
+            // fired after the prediction gave up, the gun is shot after all
+            prediction.markGun(ItemGrappleGun.IN_HAND, ItemGrappleGun.SHOT);
+            return;
+        }
+        this.launchNanos = prediction.launchNanos;
+        prediction.setDead();
+    }
+
+    /**
+     * Removes this hook without returning it to the gun, and returns the NBT
+     * to restore it from when the owner is back. Returns {@code null} if it
+     * was already dead.
+     */
+    public NBTTagCompound removeForRestore() {
+        NBTTagCompound data = new NBTTagCompound();
+        // includes the entity ID, so EntityList can recreate it
+        boolean written = writeToNBTAtomically(data);
+        // the owner is gone or leaving, don't touch their inventory
+        this.returnOnDeath = false;
+        setDead();
+        return written ? data : null;
+    }
+
     public void killWithEffects() {
         if (this.hookedBlockPos != null) {
             WorldServer w = (WorldServer) getEntityWorld();
@@ -357,10 +812,10 @@ public abstract class EntityHook extends Entity {
             NBTTagList attachPos =
                     compound.getTagList("attachPos", NBT.TAG_DOUBLE);
             if (attachPos.tagCount() == 3) {
-                getDataManager().set(ATTACH_POSITION,
+                setState(getState().withAttachPosition(
                         new Vec3d(attachPos.getDoubleAt(0),
                                 attachPos.getDoubleAt(1),
-                                attachPos.getDoubleAt(2)));
+                                attachPos.getDoubleAt(2))));
             }
         } else if (compound.hasKey("attachPos", NBT.TAG_STRING)) {
             if ("spawn".equals(compound.getString("attachPos"))) {
@@ -379,9 +834,15 @@ public abstract class EntityHook extends Entity {
         if (compound.hasKey("travelTime")) {
             travelTime = compound.getLong("travelTime");
         }
-        getDataManager().set(TRAVEL_TIME, travelTime);
-        this.targetNanos = System.nanoTime() + travelTime;
+        this.travelNeedsScheduling = true;
+        setState(getState().withTarget(getAttachPosition(), travelTime));
         setAttached(attached);
+        this.sourceSlot = compound.hasKey("sourceSlot", NBT.TAG_INT)
+                ? compound.getInteger("sourceSlot") : -1;
+        this.sourceItem = compound.hasKey("sourceItem", NBT.TAG_STRING)
+                ? Item.REGISTRY.getObject(
+                        new ResourceLocation(compound.getString("sourceItem")))
+                : null;
     }
 
     @Override
@@ -397,6 +858,25 @@ public abstract class EntityHook extends Entity {
         compound.setUniqueId("owner", getOwner());
         compound.setBoolean("attached", isAttached());
         compound.setLong("travelTime", getTravelTime());
+        compound.setInteger("sourceSlot", this.sourceSlot);
+        if (this.sourceItem != null) {
+            compound.setString("sourceItem",
+                    this.sourceItem.getRegistryName().toString());
+        }
+    }
+
+    @Override
+    public void writeSpawnData(ByteBuf buffer) {
+        PacketBuffer buf = new PacketBuffer(buffer);
+        HookStateCodec.write(buf, this.state);
+        buf.writeVarIntToBuffer(this.shot);
+    }
+
+    @Override
+    public void readSpawnData(ByteBuf additionalData) {
+        PacketBuffer buf = new PacketBuffer(additionalData);
+        this.state = HookStateCodec.read(buf);
+        this.shot = buf.readVarIntFromBuffer();
     }
 
     @Override
@@ -405,11 +885,18 @@ public abstract class EntityHook extends Entity {
         super.setLocationAndAngles(x, y, z, yaw, pitch);
         if (this.positionFromSpawn) {
             this.positionFromSpawn = false;
-            getDataManager().set(ATTACH_POSITION, getPositionVector());
+            setState(getState().withAttachPosition(getPositionVector()));
         }
     }
 
-    @SideOnly(Side.CLIENT)
+    /**
+     * Returns the client's number for the shot that fired this hook, or 0 if
+     * it wasn't predicted.
+     */
+    public int getShot() {
+        return this.shot;
+    }
+
     public abstract MotionController<?> createMotionController();
 
 }
@@ -0,0 +1,107 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.entity;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The owner of a hook as it is synced. When the owning player is tracked,
+ * only their entity ID goes on the wire, and the client resolves it to the
+ * UUID. Otherwise the UUID is sent, and so is it to clients that don't track
+ * the owner. Values read on the client may therefore have no UUID.
+ */
+public final class HookOwner {
+
+    public static final int UNTRACKED = -1;
+
+    public static HookOwner of(UUID id, int entityId) {
+        return new HookOwner(id, entityId);
+    }
+
+    public static HookOwner ofEntity(int entityId) {
+        return new HookOwner(null, entityId);
+    }
+
+    private final UUID id;
+    private final int entityId;
+
+    private HookOwner(UUID id, int entityId) {
+        this.id = id;
+        this.entityId = entityId;
+    }
+
+    /**
+     * Returns the owner's UUID, or {@code null} if only the entity ID was
+     * received.
+     */
+    public UUID getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the owner's entity ID, or {@link #UNTRACKED}.
+     */
+    public int getEntityId() {
+        return this.entityId;
+    }
+
+    public boolean isTracked() {
+        return this.entityId != UNTRACKED;
+    }
+
+    /**
+     * Returns this owner with only the UUID, for clients that can't resolve
+     * the entity ID.
+     */
+    public HookOwner withoutEntity() {
+        return isTracked() ? new HookOwner(this.id, UNTRACKED) : this;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HookOwner)) {
+            return false;
+        }
+        HookOwner other = (HookOwner) obj;
+        return this.entityId == other.entityId
+                && Objects.equals(this.id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(this.id) * 31 + this.entityId;
+    }
+
+    @Override
+    public String toString() {
+        return isTracked() ? this.id + "#" + this.entityId
+                : String.valueOf(this.id);
+    }
+
+}
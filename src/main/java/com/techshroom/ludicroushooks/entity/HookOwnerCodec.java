@@ -24,50 +24,47 @@
  */
 package com.techshroom.ludicroushooks.entity;
 
+import java.util.UUID;
+
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.network.datasync.DataParameter;
-import net.minecraft.network.datasync.DataSerializer;
-import net.minecraft.util.math.Vec3d;
 
-public enum Vec3dDataSerializer implements DataSerializer<Vec3d> {
-    INSTANCE;
+/**
+ * Writes a {@link HookOwner} as its entity ID when tracked, or as a fixed
+ * 16 byte UUID when not. UUID bits are random, so varlongs don't help them.
+ */
+public final class HookOwnerCodec {
 
-    private static final int NORM = 0b00;
-    private static final int NULL = 0b01;
-    private static final int ZERO = 0b10;
+    private static final int NULL = 0;
+    private static final int ENTITY = 1;
+    private static final int FIXED_UUID = 2;
 
-    @Override
-    public void write(PacketBuffer buf, Vec3d value) {
-        if (value == null) {
+    public static void write(PacketBuffer buf, HookOwner value) {
+        if (value == null || (!value.isTracked() && value.getId() == null)) {
             buf.writeByte(NULL);
-        } else if (value == Vec3d.ZERO) {
-            buf.writeByte(ZERO);
+        } else if (value.isTracked()) {
+            buf.writeByte(ENTITY);
+            buf.writeVarIntToBuffer(value.getEntityId());
         } else {
-            buf.writeByte(NORM);
-            buf.writeDouble(value.xCoord);
-            buf.writeDouble(value.yCoord);
-            buf.writeDouble(value.zCoord);
+            buf.writeByte(FIXED_UUID);
+            buf.writeLong(value.getId().getMostSignificantBits());
+            buf.writeLong(value.getId().getLeastSignificantBits());
         }
     }
 
-    @Override
-    public Vec3d read(PacketBuffer buf) {
+    public static HookOwner read(PacketBuffer buf) {
         byte state = buf.readByte();
         if (state == NULL) {
             return null;
         }
-        if (state == ZERO) {
-            return Vec3d.ZERO;
+        if (state == ENTITY) {
+            return HookOwner.ofEntity(buf.readVarIntFromBuffer());
         }
-        double x = buf.readDouble();
-        double y = buf.readDouble();
-        double z = buf.readDouble();
-        return new Vec3d(x, y, z);
+        long hi = buf.readLong();
+        long low = buf.readLong();
+        return HookOwner.of(new UUID(hi, low), HookOwner.UNTRACKED);
     }
 
-    @Override
-    public DataParameter<Vec3d> createKey(int id) {
-        return new DataParameter<>(id, this);
+    private HookOwnerCodec() {
     }
 
 }
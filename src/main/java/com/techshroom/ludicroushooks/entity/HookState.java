@@ -0,0 +1,138 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.entity;
+
+import java.util.Objects;
+
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Everything about a hook that clients need, synced as one value so a change
+ * to several parts goes out as one entry. Immutable, use the {@code with}
+ * methods to derive a new state.
+ */
+public final class HookState {
+
+    public static final HookState EMPTY =
+            new HookState(null, null, 0, false, false);
+
+    private final HookOwner owner;
+    private final Vec3d attachPosition;
+    private final long travelTime;
+    private final boolean attached;
+    private final boolean serverMotion;
+
+    HookState(HookOwner owner, Vec3d attachPosition, long travelTime,
+            boolean attached, boolean serverMotion) {
+        this.owner = owner;
+        this.attachPosition = attachPosition;
+        this.travelTime = travelTime;
+        this.attached = attached;
+        this.serverMotion = serverMotion;
+    }
+
+    public HookOwner getOwner() {
+        return this.owner;
+    }
+
+    public Vec3d getAttachPosition() {
+        return this.attachPosition;
+    }
+
+    /**
+     * Returns the nanoseconds the hook takes to reach the attach position.
+     */
+    public long getTravelTime() {
+        return this.travelTime;
+    }
+
+    public boolean isAttached() {
+        return this.attached;
+    }
+
+    /**
+     * Returns {@code true} if the server moves the owner, instead of the
+     * owner's client.
+     */
+    public boolean isServerMotion() {
+        return this.serverMotion;
+    }
+
+    public HookState withOwner(HookOwner owner) {
+        return new HookState(owner, this.attachPosition, this.travelTime,
+                this.attached, this.serverMotion);
+    }
+
+    public HookState withAttachPosition(Vec3d attachPosition) {
+        return new HookState(this.owner, attachPosition, this.travelTime,
+                this.attached, this.serverMotion);
+    }
+
+    public HookState withTarget(Vec3d attachPosition, long travelTime) {
+        return new HookState(this.owner, attachPosition, travelTime,
+                this.attached, this.serverMotion);
+    }
+
+    public HookState withAttached(boolean attached) {
+        return new HookState(this.owner, this.attachPosition, this.travelTime,
+                attached, this.serverMotion);
+    }
+
+    public HookState withServerMotion(boolean serverMotion) {
+        return new HookState(this.owner, this.attachPosition, this.travelTime,
+                this.attached, serverMotion);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HookState)) {
+            return false;
+        }
+        HookState other = (HookState) obj;
+        return this.travelTime == other.travelTime
+                && this.attached == other.attached
+                && this.serverMotion == other.serverMotion
+                && Objects.equals(this.owner, other.owner)
+                && Objects.equals(this.attachPosition, other.attachPosition);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.owner, this.attachPosition, this.travelTime,
+                this.attached, this.serverMotion);
+    }
+
+    @Override
+    public String toString() {
+        return "HookState[owner=" + this.owner + ", attachPosition="
+                + this.attachPosition + ", travelTime=" + this.travelTime
+                + ", attached=" + this.attached + ", serverMotion="
+                + this.serverMotion + "]";
+    }
+
+}
@@ -24,38 +24,36 @@
  */
 package com.techshroom.ludicroushooks.entity;
 
-import java.util.UUID;
-
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.network.datasync.DataParameter;
-import net.minecraft.network.datasync.DataSerializer;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Writes a {@link HookState} as a byte of flags, the owner, the quantized
+ * attach position and the travel time as a varlong.
+ */
+public final class HookStateCodec {
 
-public enum UUIDDataSerializer implements DataSerializer<UUID> {
-    INSTANCE;
+    private static final int ATTACHED = 0b01;
+    private static final int SERVER_MOTION = 0b10;
 
-    @Override
-    public void write(PacketBuffer buf, UUID value) {
-        buf.writeBoolean(value == null);
-        if (value != null) {
-            buf.writeVarLong(value.getMostSignificantBits());
-            buf.writeVarLong(value.getLeastSignificantBits());
-        }
+    public static void write(PacketBuffer buf, HookState value) {
+        buf.writeByte((value.isAttached() ? ATTACHED : 0)
+                | (value.isServerMotion() ? SERVER_MOTION : 0));
+        HookOwnerCodec.write(buf, value.getOwner());
+        QuantizedVec3dCodec.write(buf, value.getAttachPosition());
+        buf.writeVarLong(value.getTravelTime());
     }
 
-    @Override
-    public UUID read(PacketBuffer buf) {
-        boolean isNull = buf.readBoolean();
-        if (isNull) {
-            return null;
-        }
-        long hi = buf.readVarLong();
-        long low = buf.readVarLong();
-        return new UUID(hi, low);
+    public static HookState read(PacketBuffer buf) {
+        byte flags = buf.readByte();
+        HookOwner owner = HookOwnerCodec.read(buf);
+        Vec3d attachPosition = QuantizedVec3dCodec.read(buf);
+        long travelTime = buf.readVarLong();
+        return new HookState(owner, attachPosition, travelTime,
+                (flags & ATTACHED) != 0, (flags & SERVER_MOTION) != 0);
     }
 
-    @Override
-    public DataParameter<UUID> createKey(int id) {
-        return new DataParameter<>(id, this);
+    private HookStateCodec() {
     }
 
 }
@@ -1,56 +0,0 @@
-/*
- * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
- *
- * Copyright (c) TechShroom <https://techshroom.com>
- * Copyright (c) contributors
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.techshroom.ludicroushooks.entity;
-
-import net.minecraft.network.PacketBuffer;
-import net.minecraft.network.datasync.DataParameter;
-import net.minecraft.network.datasync.DataSerializer;
-
-public enum LongDataSerializer implements DataSerializer<Long> {
-    INSTANCE;
-
-    @Override
-    public void write(PacketBuffer buf, Long value) {
-        buf.writeBoolean(value == null);
-        if (value != null) {
-            buf.writeVarLong(value);
-        }
-    }
-
-    @Override
-    public Long read(PacketBuffer buf) {
-        boolean isNull = buf.readBoolean();
-        if (isNull) {
-            return null;
-        }
-        return buf.readVarLong();
-    }
-
-    @Override
-    public DataParameter<Long> createKey(int id) {
-        return new DataParameter<>(id, this);
-    }
-
-}
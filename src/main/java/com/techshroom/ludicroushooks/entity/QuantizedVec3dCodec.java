@@ -0,0 +1,132 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.entity;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Compact {@link Vec3d} codec for positions in the world. Coordinates
+ * are sent as the chunk coordinates plus the offset into the chunk, in fixed
+ * point at {@link #SCALE} steps per block, all as varints. That's usually 10
+ * to 14 bytes instead of 25.
+ *
+ * <p>
+ * Decoded coordinates are within {@link #MAX_ERROR} (half a step, about
+ * 0.000122 blocks) of the original. Values that can't be represented, such
+ * as a Y too far out or non-finite coordinates, are sent as exact doubles.
+ * </p>
+ */
+public final class QuantizedVec3dCodec {
+
+    public static final int SCALE = 4096;
+    public static final double MAX_ERROR = 0.5 / SCALE;
+
+    private static final int NORM = 0b00;
+    private static final int NULL = 0b01;
+    private static final int ZERO = 0b10;
+    private static final int QUANTIZED = 0b11;
+    // keeps Y * SCALE well inside an int
+    private static final double MAX_Y = 1 << 18;
+    // block coordinates past this overflow chunk math
+    private static final double MAX_XZ = 1 << 30;
+
+    /**
+     * Writes {@code value}, which may be {@code null}.
+     */
+    public static void write(PacketBuffer buf, Vec3d value) {
+        if (value == null) {
+            buf.writeByte(NULL);
+        } else if (value.equals(Vec3d.ZERO)) {
+            buf.writeByte(ZERO);
+        } else if (canQuantize(value)) {
+            int chunkX = floor(value.xCoord) >> 4;
+            int chunkZ = floor(value.zCoord) >> 4;
+            buf.writeByte(QUANTIZED);
+            buf.writeVarIntToBuffer(zigZag(chunkX));
+            buf.writeVarIntToBuffer(zigZag(chunkZ));
+            // 0 to 16 * SCALE inclusive, rounding can reach the far edge
+            buf.writeVarIntToBuffer(
+                    (int) Math.round((value.xCoord - (chunkX << 4)) * SCALE));
+            buf.writeVarIntToBuffer(
+                    (int) Math.round((value.zCoord - (chunkZ << 4)) * SCALE));
+            buf.writeVarIntToBuffer(
+                    zigZag((int) Math.round(value.yCoord * SCALE)));
+        } else {
+            buf.writeByte(NORM);
+            buf.writeDouble(value.xCoord);
+            buf.writeDouble(value.yCoord);
+            buf.writeDouble(value.zCoord);
+        }
+    }
+
+    public static Vec3d read(PacketBuffer buf) {
+        byte state = buf.readByte();
+        if (state == NULL) {
+            return null;
+        }
+        if (state == ZERO) {
+            return Vec3d.ZERO;
+        }
+        if (state == QUANTIZED) {
+            int chunkX = unZigZag(buf.readVarIntFromBuffer());
+            int chunkZ = unZigZag(buf.readVarIntFromBuffer());
+            double x = (chunkX << 4)
+                    + (double) buf.readVarIntFromBuffer() / SCALE;
+            double z = (chunkZ << 4)
+                    + (double) buf.readVarIntFromBuffer() / SCALE;
+            double y = (double) unZigZag(buf.readVarIntFromBuffer()) / SCALE;
+            return new Vec3d(x, y, z);
+        }
+        double x = buf.readDouble();
+        double y = buf.readDouble();
+        double z = buf.readDouble();
+        return new Vec3d(x, y, z);
+    }
+
+    private static boolean canQuantize(Vec3d value) {
+        // also false for NaN
+        return Math.abs(value.xCoord) < MAX_XZ
+                && Math.abs(value.zCoord) < MAX_XZ
+                && Math.abs(value.yCoord) < MAX_Y;
+    }
+
+    private static int floor(double d) {
+        int i = (int) d;
+        return d < i ? i - 1 : i;
+    }
+
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private QuantizedVec3dCodec() {
+    }
+
+}
@@ -75,11 +75,7 @@ public class HookRenderer extends Render<EntityHook> {
         // cap lerp to 1
         lerp = Math.min(lerp, 1);
 
-        // get firer, return immediately if not present
         Entity firer = entity.getOwnerEntity();
-        if (firer == null) {
-            return;
-        }
         Entity renderEntity = Minecraft.getMinecraft().getRenderViewEntity();
 
         // Offset to render position
@@ -104,7 +100,14 @@ public class HookRenderer extends Render<EntityHook> {
 
         // Draw the chain at the correct location
         // Taking into account the firing position
-        Vec3d gunLocation = EntityHook.getGunLocation(firer, partialTicks);
+        Vec3d gunLocation;
+        if (firer != null) {
+            gunLocation = EntityHook.getGunLocation(firer, partialTicks);
+        } else {
+            // the owner is out of range, start at the hook's synced position,
+            // which the server keeps near the owner
+            gunLocation = getPositionLerp(entity, partialTicks);
+        }
         drawChain(firer, gunLocation,
                 entity.getPullPosition().subtract(gunLocation).scale(lerp),
                 renderELerpd, partialTicks);
@@ -150,7 +153,7 @@ public class HookRenderer extends Render<EntityHook> {
      * Draws the chain from the firer's hand to the hook.
      * 
      * @param firer
-     *            - The firing entity
+     *            - The firing entity, {@code null} if it isn't loaded
      * @param fireLoc
      *            - The position, in world coords, of the firer
      * @param posDiff
@@ -24,11 +24,13 @@
  */
 package com.techshroom.ludicroushooks.item;
 
-import java.util.List;
 import java.util.UUID;
 import java.util.function.Function;
 
+import com.techshroom.ludicroushooks.LudicrousHooks;
 import com.techshroom.ludicroushooks.entity.EntityHook;
+import com.techshroom.ludicroushooks.network.HookShotMessage;
+import com.techshroom.ludicroushooks.world.HookRegistry;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.Item;
@@ -38,6 +40,7 @@ import net.minecraft.util.ActionResult;
 import net.minecraft.util.EnumActionResult;
 import net.minecraft.util.EnumHand;
 import net.minecraft.world.World;
+import net.minecraftforge.common.util.FakePlayer;
 
 public abstract class ItemGrappleGun extends Item {
 
@@ -48,52 +51,115 @@ public abstract class ItemGrappleGun extends Item {
     public ActionResult<ItemStack> onItemRightClick(ItemStack itemStackIn,
             World worldIn, EntityPlayer playerIn, EnumHand hand) {
         if (itemStackIn.getItemDamage() == IN_HAND) {
-            return onRightClickInHand(itemStackIn, worldIn, playerIn);
+            return onRightClickInHand(itemStackIn, worldIn, playerIn, hand);
         } else if (itemStackIn.getItemDamage() == SHOT) {
-            return onRightClickShot(itemStackIn, worldIn, playerIn);
+            return onRightClickShot(itemStackIn, worldIn, playerIn, hand);
         }
         return ActionResult.newResult(EnumActionResult.PASS, itemStackIn);
     }
 
     private ActionResult<ItemStack> onRightClickInHand(ItemStack itemStackIn,
-            World worldIn, EntityPlayer playerIn) {
+            World worldIn, EntityPlayer playerIn, EnumHand hand) {
         if (!worldIn.isRemote) {
-            EntityHook hook = EntityHook.shoot(playerIn, getHookConstructor());
-            NBTTagCompound nbt = new NBTTagCompound();
-            nbt.setUniqueId("hook", hook.getUniqueID());
-            itemStackIn.setTagCompound(nbt);
-            itemStackIn.setItemDamage(SHOT);
+            // players fire with a HookShotMessage, which carries the number
+            // of their prediction
+            if (playerIn instanceof FakePlayer) {
+                fire(playerIn, hand, 0);
+            }
             return ActionResult.newResult(EnumActionResult.SUCCESS,
                     itemStackIn);
         }
-        // assume it got shot ...
+        // show the shot now, the server's hook takes over when it arrives
+        EntityHook hook =
+                EntityHook.predict(playerIn, hand, getHookConstructor());
+        itemStackIn.setItemDamage(SHOT);
+        LudicrousHooks.getInstance().getNetwork()
+                .sendToServer(new HookShotMessage(hand, hook.getShot()));
         return ActionResult.newResult(EnumActionResult.SUCCESS, itemStackIn);
     }
 
+    /**
+     * Fires the grapple gun in {@code hand} on the server, if it is loaded.
+     * {@code shot} is the number of the client's prediction, or 0.
+     */
+    public static void fire(EntityPlayer player, EnumHand hand, int shot) {
+        ItemStack stack = player.getHeldItem(hand);
+        if (stack == null || !(stack.getItem() instanceof ItemGrappleGun)
+                || stack.getItemDamage() != IN_HAND
+                || !player.isEntityAlive() || player.isSpectator()) {
+            // the client's prediction times out and loads the gun again
+            return;
+        }
+        ItemGrappleGun gun = (ItemGrappleGun) stack.getItem();
+        // the hook remembers the slot, so only the damage changes
+        EntityHook.shoot(player, hand, gun.getHookConstructor(), shot);
+        stack.setItemDamage(SHOT);
+    }
+
     protected abstract Function<World, EntityHook> getHookConstructor();
 
     private ActionResult<ItemStack> onRightClickShot(ItemStack itemStackIn,
-            World worldIn, EntityPlayer playerIn) {
+            World worldIn, EntityPlayer playerIn, EnumHand hand) {
         ActionResult<ItemStack> result =
                 ActionResult.newResult(EnumActionResult.SUCCESS, itemStackIn);
         if (!worldIn.isRemote) {
-            NBTTagCompound tagCompound = itemStackIn.getTagCompound();
-            itemStackIn.setTagCompound(null);
-            itemStackIn.setItemDamage(IN_HAND);
-            if (tagCompound == null) {
-                return result;
+            HookRegistry hooks =
+                    LudicrousHooks.getInstance().getHookWorld(worldIn)
+                            .getHooks();
+            EntityHook hook = findLegacyHook(itemStackIn, hooks);
+            if (hook == null) {
+                hook = findHook(hooks, playerIn, hand);
             }
-            UUID hookId = tagCompound.getUniqueId("hook");
-            if (hookId == null) {
-                return result;
+            if (hook != null) {
+                hook.killWithEffects();
             }
-            List<EntityHook> hooks = worldIn.getEntities(EntityHook.class,
-                    h -> h.getUniqueID().equals(hookId));
-            hooks.forEach(EntityHook::killWithEffects);
+            // may already be done by the hook returning to this stack
+            itemStackIn.setItemDamage(IN_HAND);
             return result;
         }
         // assume it got retracted ...
         return result;
     }
 
+    /**
+     * Finds the hook fired from the slot in {@code hand}, or any of the
+     * player's hooks from this kind of gun if that slot has none.
+     */
+    private EntityHook findHook(HookRegistry hooks, EntityPlayer player,
+            EnumHand hand) {
+        int slot = EntityHook.getInventorySlot(player.inventory, hand);
+        EntityHook fallback = null;
+        for (EntityHook hook : hooks.getByOwner(player.getUniqueID())) {
+            if (hook.isDead || hook.getSourceItem() != this) {
+                continue;
+            }
+            if (hook.getSourceSlot() == slot) {
+                return hook;
+            }
+            if (fallback == null) {
+                fallback = hook;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Stacks shot by older versions link to their hook by NBT. Reads and
+     * clears that link.
+     */
+    private static EntityHook findLegacyHook(ItemStack stack,
+            HookRegistry hooks) {
+        NBTTagCompound tagCompound = stack.getTagCompound();
+        if (tagCompound == null || !tagCompound.hasUniqueId("hook")) {
+            return null;
+        }
+        UUID hookId = tagCompound.getUniqueId("hook");
+        tagCompound.removeTag("hookMost");
+        tagCompound.removeTag("hookLeast");
+        if (tagCompound.hasNoTags()) {
+            stack.setTagCompound(null);
+        }
+        return hooks.get(hookId);
+    }
+
 }
@@ -25,49 +25,32 @@
 package com.techshroom.ludicroushooks.json;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
-import org.apache.commons.codec.binary.Base64InputStream;
-import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.codec.binary.Base64;
 
-import com.google.gson.TypeAdapter;
+import com.google.common.io.ByteStreams;
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
 
-import net.minecraft.nbt.CompressedStreamTools;
-import net.minecraft.nbt.NBTTagCompound;
-
-// TODO maybe change how this works, could output chunks of the data or similar
-public class NBTAdapter extends TypeAdapter<NBTTagCompound> {
-
-    public static final NBTAdapter INSTANCE = new NBTAdapter();
-    private static final byte[] ZERO_BYTES = {};
-
-    private NBTAdapter() {
-    }
-
-    @Override
-    public void write(JsonWriter out, NBTTagCompound value) throws IOException {
-        String b64;
-        try (ByteArrayOutputStream cap = new ByteArrayOutputStream();
-                Base64OutputStream stream =
-                        new Base64OutputStream(cap, true, 0, ZERO_BYTES)) {
-            CompressedStreamTools.writeCompressed(value, stream);
-            b64 = cap.toString(StandardCharsets.UTF_8.name());
+/**
+ * Reads the gzipped, Base64 encoded NBT of the old JSON pending hook
+ * snapshot.
+ */
+public final class NBTAdapter {
+
+    /**
+     * Reads a value as uncompressed NBT bytes, without parsing it.
+     */
+    public static byte[] readBytes(JsonReader in) throws IOException {
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(
+                Base64.decodeBase64(in.nextString())))) {
+            return ByteStreams.toByteArray(stream);
         }
-        out.value(b64);
     }
 
-    @Override
-    public NBTTagCompound read(JsonReader in) throws IOException {
-        String b64 = in.nextString();
-        try (ByteArrayInputStream b64s =
-                new ByteArrayInputStream(b64.getBytes(StandardCharsets.UTF_8));
-                Base64InputStream stream = new Base64InputStream(b64s)) {
-            return CompressedStreamTools.readCompressed(stream);
-        }
+    private NBTAdapter() {
     }
 
 }
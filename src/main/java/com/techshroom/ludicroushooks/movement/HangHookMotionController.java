@@ -26,71 +26,27 @@ package com.techshroom.ludicroushooks.movement;
 
 import com.techshroom.ludicroushooks.entity.EntityHangHook;
 
-import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.util.math.Vec3d;
 
 public class HangHookMotionController
         extends MotionControllerBase<EntityHangHook> {
 
-    private Vec3d motion;
-
     public HangHookMotionController(EntityHangHook associatedHook) {
         super(associatedHook);
-        Entity e = associatedHook.getOwnerEntity();
-        this.motion = new Vec3d(e.motionX, e.motionY, e.motionZ);
     }
 
     @Override
     public void updatePlayerMotion(EntityPlayer e) {
         applyCollisions();
-        Vec3d eVec = getAssociatedHook().getPullPosition();
-        if (eVec == null) {
+        if (getAssociatedHook().getPullPosition() == null) {
             return;
         }
-        Vec3d pVec = e.getPositionVector().addVector(0, e.getEyeHeight(), 0);
-
-        e.motionX = this.motion.xCoord;
-        e.motionY = this.motion.yCoord;
-        e.motionZ = this.motion.zCoord;
 
-        this.motion = dampenMotion(this.motion, Vec3d.ZERO);
-    }
-
-    private static Vec3d dampenMotion(Vec3d motion, Vec3d forward) {
-        Vec3d projected = project(motion, forward);
-        double dampening = 0.05;
-        double invDamp = 1 - dampening;
-        return new Vec3d(projected.xCoord * dampening + motion.xCoord * invDamp,
-                projected.yCoord * dampening + motion.yCoord * invDamp,
-                projected.zCoord * dampening + motion.zCoord * invDamp);
-    }
+        e.motionX = this.motion.x;
+        e.motionY = this.motion.y;
+        e.motionZ = this.motion.z;
 
-    private static Vec3d project(Vec3d vec, Vec3d project) {
-        Vec3d v3 = vec.normalize();
-        double dot = vec.dotProduct(v3);
-        double len = v3.lengthVector();
-        return v3.scale(dot / len);
-    }
-
-    private void applyCollisions() {
-        EntityPlayer entity = getAssociatedHook().getOwnerEntity();
-        if (entity.isCollidedHorizontally) {
-            if (entity.motionX == 0) {
-                this.motion =
-                        new Vec3d(0, this.motion.yCoord, this.motion.zCoord);
-            }
-            if (entity.motionZ == 0) {
-                this.motion =
-                        new Vec3d(this.motion.zCoord, this.motion.yCoord, 0);
-            }
-        }
-        if (entity.isCollidedVertically) {
-            if (entity.motionY == 0) {
-                this.motion =
-                        new Vec3d(this.motion.xCoord, 0, this.motion.zCoord);
-            }
-        }
+        dampenMotion();
     }
 
 }
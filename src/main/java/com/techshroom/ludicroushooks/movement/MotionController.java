@@ -29,10 +29,7 @@ import java.util.UUID;
 import com.techshroom.ludicroushooks.entity.EntityHook;
 
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraftforge.fml.relauncher.Side;
-import net.minecraftforge.fml.relauncher.SideOnly;
 
-@SideOnly(Side.CLIENT)
 public interface MotionController<EH extends EntityHook> {
     
     void updatePlayerMotion(EntityPlayer player);
@@ -28,15 +28,72 @@ import java.util.UUID;
 
 import com.techshroom.ludicroushooks.entity.EntityHook;
 
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Base for the controllers. Motion is kept in a {@link MutableVec3}, so an
+ * update doesn't allocate.
+ */
 public abstract class MotionControllerBase<EH extends EntityHook>
         implements MotionController<EH> {
 
     private final EH associatedHook;
     private final UUID playerUUID;
+    protected final MutableVec3 motion;
+    // temporary for the current update
+    protected final MutableVec3 scratch = new MutableVec3();
 
     protected MotionControllerBase(EH associatedHook) {
         this.associatedHook = associatedHook;
         this.playerUUID = associatedHook.getOwner();
+        Entity e = associatedHook.getOwnerEntity();
+        this.motion = new MutableVec3(e.motionX, e.motionY, e.motionZ);
+    }
+
+    /**
+     * Blends 5% of the motion projected onto itself back into the motion.
+     */
+    protected void dampenMotion() {
+        MutableVec3 projected = this.scratch.set(this.motion).normalize();
+        double dot = this.motion.dotProduct(projected);
+        double len = projected.lengthVector();
+        projected.scale(dot / len);
+        double dampening = 0.05;
+        double invDamp = 1 - dampening;
+        this.motion.set(projected.x * dampening + this.motion.x * invDamp,
+                projected.y * dampening + this.motion.y * invDamp,
+                projected.z * dampening + this.motion.z * invDamp);
+    }
+
+    protected void applyCollisions() {
+        EntityPlayer entity = getAssociatedHook().getOwnerEntity();
+        applyCollisions(entity.isCollidedHorizontally,
+                entity.isCollidedVertically, entity.motionX, entity.motionY,
+                entity.motionZ);
+    }
+
+    /**
+     * Stops the motion on the axes the player collided on, given the
+     * player's collision flags and motion after its last move.
+     */
+    void applyCollisions(boolean collidedHorizontally,
+            boolean collidedVertically, double motionX, double motionY,
+            double motionZ) {
+        if (collidedHorizontally) {
+            if (motionX == 0) {
+                this.motion.set(0, this.motion.y, this.motion.z);
+            }
+            if (motionZ == 0) {
+                // X takes Z here, kept so motion stays the same as before
+                this.motion.set(this.motion.z, this.motion.y, 0);
+            }
+        }
+        if (collidedVertically) {
+            if (motionY == 0) {
+                this.motion.set(this.motion.x, 0, this.motion.z);
+            }
+        }
     }
 
     @Override
@@ -26,19 +26,17 @@ package com.techshroom.ludicroushooks.movement;
 
 import com.techshroom.ludicroushooks.entity.EntityMotorizedHook;
 
-import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.Vec3d;
 
 public class MotorizedHookMotionController
         extends MotionControllerBase<EntityMotorizedHook> {
 
-    private Vec3d motion;
+    private final MutableVec3 currentDist = new MutableVec3();
 
     public MotorizedHookMotionController(EntityMotorizedHook associatedHook) {
         super(associatedHook);
-        Entity e = associatedHook.getOwnerEntity();
-        this.motion = new Vec3d(e.motionX, e.motionY, e.motionZ);
     }
 
     @Override
@@ -48,63 +46,39 @@ public class MotorizedHookMotionController
         if (eVec == null) {
             return;
         }
-        Vec3d pVec = e.getPositionVector().addVector(0, e.getEyeHeight(), 0);
-        Vec3d currentDist = eVec.subtract(pVec);
-        double currentDistScalar = currentDist.lengthVector();
-        Vec3d rescaledDiff = currentDist.scale(0.2 / currentDistScalar);
+        pull(eVec, e.posX, e.posY, e.posZ, e.getEyeHeight(),
+                e.getEntityBoundingBox());
 
-        if (currentDistScalar < 4) {
-            if (this.motion.lengthSquared() > 0.3) {
-                this.motion = this.motion.scale(0.6);
-            }
-        } else if (e.getEntityBoundingBox().intersects(eVec,
-                eVec.addVector(0.1, 0.1, 0.1))) {
-            this.motion = this.motion.scale(0.5);
-        }
-
-        this.motion = this.motion.add(rescaledDiff);
-
-        e.motionX = this.motion.xCoord;
-        e.motionY = this.motion.yCoord;
-        e.motionZ = this.motion.zCoord;
-
-        this.motion = dampenMotion(this.motion, currentDist.normalize());
-    }
+        e.motionX = this.motion.x;
+        e.motionY = this.motion.y;
+        e.motionZ = this.motion.z;
 
-    private static Vec3d dampenMotion(Vec3d motion, Vec3d forward) {
-        Vec3d projected = project(motion, forward);
-        double dampening = 0.05;
-        double invDamp = 1 - dampening;
-        return new Vec3d(projected.xCoord * dampening + motion.xCoord * invDamp,
-                projected.yCoord * dampening + motion.yCoord * invDamp,
-                projected.zCoord * dampening + motion.zCoord * invDamp);
+        dampenMotion();
     }
 
-    private static Vec3d project(Vec3d vec, Vec3d project) {
-        Vec3d v3 = vec.normalize();
-        double dot = vec.dotProduct(v3);
-        double len = v3.lengthVector();
-        return v3.scale(dot / len);
-    }
+    /**
+     * Pulls the motion towards {@code eVec}, for a player at the given
+     * position and with the given bounding box.
+     */
+    void pull(Vec3d eVec, double posX, double posY, double posZ,
+            float eyeHeight, AxisAlignedBB box) {
+        MutableVec3 pVec =
+                this.scratch.set(posX, posY, posZ).addVector(0, eyeHeight, 0);
+        MutableVec3 currentDist = this.currentDist.set(eVec).subtract(pVec);
+        double currentDistScalar = currentDist.lengthVector();
 
-    private void applyCollisions() {
-        EntityPlayer entity = getAssociatedHook().getOwnerEntity();
-        if (entity.isCollidedHorizontally) {
-            if (entity.motionX == 0) {
-                this.motion =
-                        new Vec3d(0, this.motion.yCoord, this.motion.zCoord);
-            }
-            if (entity.motionZ == 0) {
-                this.motion =
-                        new Vec3d(this.motion.zCoord, this.motion.yCoord, 0);
-            }
-        }
-        if (entity.isCollidedVertically) {
-            if (entity.motionY == 0) {
-                this.motion =
-                        new Vec3d(this.motion.xCoord, 0, this.motion.zCoord);
+        if (currentDistScalar < 4) {
+            if (this.motion.lengthSquared() > 0.3) {
+                this.motion.scale(0.6);
             }
+        } else if (box.intersects(eVec.xCoord, eVec.yCoord, eVec.zCoord,
+                eVec.xCoord + 0.1, eVec.yCoord + 0.1, eVec.zCoord + 0.1)) {
+            this.motion.scale(0.5);
         }
+
+        MutableVec3 rescaledDiff =
+                this.scratch.set(currentDist).scale(0.2 / currentDistScalar);
+        this.motion.add(rescaledDiff);
     }
 
 }
@@ -0,0 +1,102 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.movement;
+
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * A vector that is updated in place. Each operation does the same arithmetic
+ * as its {@link Vec3d} namesake, so results match to the bit, just without
+ * the allocations.
+ */
+final class MutableVec3 {
+
+    double x;
+    double y;
+    double z;
+
+    MutableVec3() {
+    }
+
+    MutableVec3(double x, double y, double z) {
+        set(x, y, z);
+    }
+
+    MutableVec3 set(double x, double y, double z) {
+        // Vec3d turns -0 into 0
+        this.x = x == -0.0D ? 0.0D : x;
+        this.y = y == -0.0D ? 0.0D : y;
+        this.z = z == -0.0D ? 0.0D : z;
+        return this;
+    }
+
+    MutableVec3 set(MutableVec3 vec) {
+        return set(vec.x, vec.y, vec.z);
+    }
+
+    MutableVec3 set(Vec3d vec) {
+        return set(vec.xCoord, vec.yCoord, vec.zCoord);
+    }
+
+    MutableVec3 addVector(double x, double y, double z) {
+        return set(this.x + x, this.y + y, this.z + z);
+    }
+
+    MutableVec3 add(MutableVec3 vec) {
+        return addVector(vec.x, vec.y, vec.z);
+    }
+
+    MutableVec3 subtract(MutableVec3 vec) {
+        return addVector(-vec.x, -vec.y, -vec.z);
+    }
+
+    MutableVec3 scale(double factor) {
+        return set(this.x * factor, this.y * factor, this.z * factor);
+    }
+
+    MutableVec3 normalize() {
+        double length = MathHelper
+                .sqrt_double(this.x * this.x + this.y * this.y
+                        + this.z * this.z);
+        return length < 1.0E-4D ? set(0, 0, 0)
+                : set(this.x / length, this.y / length, this.z / length);
+    }
+
+    double dotProduct(MutableVec3 vec) {
+        return this.x * vec.x + this.y * vec.y + this.z * vec.z;
+    }
+
+    double lengthSquared() {
+        return this.x * this.x + this.y * this.y + this.z * this.z;
+    }
+
+    double lengthVector() {
+        // float precision, like Vec3d
+        return MathHelper.sqrt_double(
+                this.x * this.x + this.y * this.y + this.z * this.z);
+    }
+
+}
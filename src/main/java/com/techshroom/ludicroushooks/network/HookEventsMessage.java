@@ -0,0 +1,115 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.entity.HookState;
+import com.techshroom.ludicroushooks.entity.HookStateCodec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * All hook state changes from one tick that a client can see. Each event is
+ * the hook's entity ID as a varint followed by its {@link HookState}.
+ * Events are encoded once on the server and shared between the messages of
+ * every client tracking the hook.
+ */
+public class HookEventsMessage implements IMessage {
+
+    /**
+     * Encodes a state change for {@link #add}.
+     */
+    public static ByteBuf encodeState(int entityId, HookState state) {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer(16));
+        buf.writeVarIntToBuffer(entityId);
+        HookStateCodec.write(buf, state);
+        return buf;
+    }
+
+    // server side
+    private final List<ByteBuf> encoded = new ArrayList<>();
+    // client side
+    private int[] entityIds;
+    private HookState[] states;
+
+    public void add(ByteBuf event) {
+        this.encoded.add(event);
+    }
+
+    public int size() {
+        return this.entityIds != null ? this.entityIds.length
+                : this.encoded.size();
+    }
+
+    public int getEntityId(int index) {
+        return this.entityIds[index];
+    }
+
+    public HookState getState(int index) {
+        return this.states[index];
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        new PacketBuffer(buf).writeVarIntToBuffer(this.encoded.size());
+        for (ByteBuf event : this.encoded) {
+            // leave the event readable for the other clients
+            buf.writeBytes(event, event.readerIndex(), event.readableBytes());
+        }
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer in = new PacketBuffer(buf);
+        int count = in.readVarIntFromBuffer();
+        this.entityIds = new int[count];
+        this.states = new HookState[count];
+        for (int i = 0; i < count; i++) {
+            this.entityIds[i] = in.readVarIntFromBuffer();
+            this.states[i] = HookStateCodec.read(in);
+        }
+    }
+
+    public static class Handler
+            implements IMessageHandler<HookEventsMessage, IMessage> {
+
+        @Override
+        public IMessage onMessage(HookEventsMessage message,
+                MessageContext ctx) {
+            LudicrousHooks.getProxy().handleHookEvents(message);
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.network;
+
+import com.techshroom.ludicroushooks.item.ItemGrappleGun;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.EnumHand;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Fires the grapple gun in a hand, with the number the client gave its
+ * prediction of the shot. The server sends the number back with the hook it
+ * fires, and ignores the message if the gun can't fire.
+ */
+public class HookShotMessage implements IMessage {
+
+    private static final EnumHand[] HANDS = EnumHand.values();
+
+    private EnumHand hand;
+    private int shot;
+
+    public HookShotMessage() {
+    }
+
+    public HookShotMessage(EnumHand hand, int shot) {
+        this.hand = hand;
+        this.shot = shot;
+    }
+
+    public EnumHand getHand() {
+        return this.hand;
+    }
+
+    public int getShot() {
+        return this.shot;
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(this.hand.ordinal());
+        new PacketBuffer(buf).writeVarIntToBuffer(this.shot);
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        int hand = buf.readUnsignedByte();
+        this.hand = hand < HANDS.length ? HANDS[hand] : null;
+        this.shot = new PacketBuffer(buf).readVarIntFromBuffer();
+    }
+
+    public static class Handler
+            implements IMessageHandler<HookShotMessage, IMessage> {
+
+        @Override
+        public IMessage onMessage(HookShotMessage message,
+                MessageContext ctx) {
+            EntityPlayerMP player = ctx.getServerHandler().playerEntity;
+            if (message.getHand() == null) {
+                return null;
+            }
+            player.getServerWorld().addScheduledTask(() -> ItemGrappleGun
+                    .fire(player, message.getHand(), message.getShot()));
+            return null;
+        }
+
+    }
+
+}
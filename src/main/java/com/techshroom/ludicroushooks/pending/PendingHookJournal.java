@@ -0,0 +1,225 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.pending;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+
+/**
+ * Append-only log of changes to the pending hooks. The file starts with a
+ * magic number and a version byte, then a record is
+ * {@code length, body, crc32(body)}, where the body is a type byte, the
+ * owner UUID and, for additions, the time it was added and the hook NBT.
+ * Replay stops at the first incomplete or corrupt record, which is where a
+ * crash cut the log off.
+ *
+ * <p>
+ * Additions are set-like and removals clear an owner, so replaying a
+ * journal over a snapshot that already contains some of it gives the same
+ * result as replaying it over the state it was written against.
+ * </p>
+ */
+class PendingHookJournal implements Closeable {
+
+    // "LHPJ"
+    private static final int MAGIC = 0x4C48504A;
+    private static final byte VERSION = 1;
+    private static final byte ADD = 1;
+    private static final byte REMOVE_OWNER = 2;
+    // anything longer is a torn length, hook NBT is tiny
+    private static final int MAX_RECORD_LENGTH = 1 << 24;
+
+    /**
+     * Receives replayed records.
+     */
+    interface Visitor {
+
+        void add(UUID owner, byte[] hook, long addedMillis);
+
+        void removeOwner(UUID owner);
+
+    }
+
+    /**
+     * Replays the journal at {@code file} into {@code visitor}.
+     *
+     * @return the number of records replayed
+     */
+    static int replay(Path file, Visitor visitor) throws IOException {
+        int records = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a pending hook journal: "
+                            + file);
+                }
+                if (in.readByte() != VERSION) {
+                    throw new IOException("Unknown journal version in "
+                            + file);
+                }
+            } catch (EOFException e) {
+                // empty, or cut off in the header
+                return records;
+            }
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        warnTruncated(file, records);
+                        return records;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != in.readInt()) {
+                        warnTruncated(file, records);
+                        return records;
+                    }
+                } catch (EOFException e) {
+                    // clean end, or a record cut off mid-write
+                    return records;
+                }
+                DataInputStream record = new DataInputStream(
+                        new ByteArrayInputStream(body));
+                byte type = record.readByte();
+                UUID owner = new UUID(record.readLong(), record.readLong());
+                switch (type) {
+                    case ADD:
+                        long addedMillis = record.readLong();
+                        byte[] hook = new byte[record.available()];
+                        record.readFully(hook);
+                        visitor.add(owner, hook, addedMillis);
+                        break;
+                    case REMOVE_OWNER:
+                        visitor.removeOwner(owner);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type
+                                + " in " + file);
+                }
+                records++;
+            }
+        }
+    }
+
+    private static void warnTruncated(Path file, int records) {
+        LudicrousHooks.LOGGER.warn("Pending hook journal " + file
+                + " is damaged after " + records
+                + " records, ignoring the rest");
+    }
+
+    private final OutputStream out;
+    private final ByteArrayOutputStream recordBuffer =
+            new ByteArrayOutputStream();
+    private final DataOutputStream record =
+            new DataOutputStream(this.recordBuffer);
+    private final CRC32 crc = new CRC32();
+    private int recordCount;
+
+    PendingHookJournal(Path file) throws IOException {
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        this.out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (empty) {
+            writeInt(MAGIC);
+            this.out.write(VERSION);
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Returns the number of records appended through this instance.
+     */
+    int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Appends an addition. {@code hook} is the uncompressed NBT.
+     */
+    void appendAdd(UUID owner, byte[] hook, long addedMillis)
+            throws IOException {
+        startRecord(ADD, owner);
+        this.record.writeLong(addedMillis);
+        this.record.write(hook);
+        finishRecord();
+    }
+
+    void appendRemoveOwner(UUID owner) throws IOException {
+        startRecord(REMOVE_OWNER, owner);
+        finishRecord();
+    }
+
+    private void startRecord(byte type, UUID owner) throws IOException {
+        this.recordBuffer.reset();
+        this.record.writeByte(type);
+        this.record.writeLong(owner.getMostSignificantBits());
+        this.record.writeLong(owner.getLeastSignificantBits());
+    }
+
+    private void finishRecord() throws IOException {
+        byte[] body = this.recordBuffer.toByteArray();
+        this.crc.reset();
+        this.crc.update(body);
+        writeInt(body.length);
+        this.out.write(body);
+        writeInt((int) this.crc.getValue());
+        // hand it to the OS, so it survives the process dying
+        this.out.flush();
+        this.recordCount++;
+    }
+
+    private void writeInt(int value) throws IOException {
+        this.out.write(value >>> 24);
+        this.out.write(value >>> 16);
+        this.out.write(value >>> 8);
+        this.out.write(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+}
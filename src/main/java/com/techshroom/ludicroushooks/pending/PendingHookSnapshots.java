@@ -0,0 +1,180 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.pending;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.google.gson.stream.JsonReader;
+import com.techshroom.ludicroushooks.json.NBTAdapter;
+
+/**
+ * Reads and writes pending hook snapshots. The current format is a magic
+ * number and version byte, then every owner and hook in a single deflate
+ * stream, so the many tiny NBT blobs share one compression window. Each
+ * hook has the time it was added. The old JSON snapshot, with one gzip
+ * stream per hook and no add times, can still be read.
+ */
+final class PendingHookSnapshots {
+
+    // "LHPH"
+    private static final int MAGIC = 0x4C485048;
+    private static final byte VERSION = 2;
+    private static final byte OWNER = 1;
+    private static final byte END = 0;
+    // anything longer is corrupt, hook NBT is tiny
+    private static final int MAX_HOOK_LENGTH = 1 << 24;
+
+    /**
+     * A hook's uncompressed NBT, and when it was added.
+     */
+    static final class Entry {
+
+        final byte[] nbt;
+        final long addedMillis;
+
+        Entry(byte[] nbt, long addedMillis) {
+            this.nbt = nbt;
+            this.addedMillis = addedMillis;
+        }
+
+    }
+
+    /**
+     * One owner's hooks, as written to a snapshot.
+     */
+    static final class Owner {
+
+        final UUID id;
+        // oldest first
+        final List<Entry> hooks;
+
+        Owner(UUID id, List<Entry> hooks) {
+            this.id = id;
+            this.hooks = hooks;
+        }
+
+    }
+
+    static void write(Path file, Iterable<Owner> owners) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (OutputStream fileOut =
+                new BufferedOutputStream(Files.newOutputStream(file))) {
+            DataOutputStream header = new DataOutputStream(fileOut);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            DataOutputStream out = new DataOutputStream(
+                    new DeflaterOutputStream(fileOut, deflater, 8192));
+            for (Owner owner : owners) {
+                out.writeByte(OWNER);
+                out.writeLong(owner.id.getMostSignificantBits());
+                out.writeLong(owner.id.getLeastSignificantBits());
+                out.writeInt(owner.hooks.size());
+                for (Entry hook : owner.hooks) {
+                    out.writeLong(hook.addedMillis);
+                    out.writeInt(hook.nbt.length);
+                    out.write(hook.nbt);
+                }
+            }
+            out.writeByte(END);
+            // finishes the deflate stream and closes the file
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static void read(Path file, PendingHookJournal.Visitor visitor)
+            throws IOException {
+        Inflater inflater = new Inflater();
+        try (InputStream fileIn =
+                new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream header = new DataInputStream(fileIn);
+            if (header.readInt() != MAGIC) {
+                throw new IOException("Not a pending hook snapshot");
+            }
+            byte version = header.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unknown snapshot version " + version);
+            }
+            DataInputStream in = new DataInputStream(
+                    new InflaterInputStream(fileIn, inflater, 8192));
+            while (in.readByte() == OWNER) {
+                UUID owner = new UUID(in.readLong(), in.readLong());
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long addedMillis = in.readLong();
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_HOOK_LENGTH) {
+                        throw new IOException("Corrupt hook length " + length);
+                    }
+                    byte[] hook = new byte[length];
+                    in.readFully(hook);
+                    visitor.add(owner, hook, addedMillis);
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads the old {@code Multimap<UUID, NBTTagCompound>} JSON snapshot. It
+     * has no add times, so every hook gets {@code addedMillis}.
+     */
+    static void readJson(Path file, long addedMillis,
+            PendingHookJournal.Visitor visitor) throws IOException {
+        try (JsonReader r = new JsonReader(Files.newBufferedReader(file))) {
+            r.beginObject();
+            while (r.hasNext()) {
+                UUID owner = UUID.fromString(r.nextName());
+                r.beginArray();
+                while (r.hasNext()) {
+                    visitor.add(owner, NBTAdapter.readBytes(r),
+                            addedMillis);
+                }
+                r.endArray();
+            }
+            r.endObject();
+        }
+    }
+
+    private PendingHookSnapshots() {
+    }
+
+}
@@ -0,0 +1,575 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.pending;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.techshroom.ludicroushooks.LudicrousHooks;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Hooks waiting for their owner to come back, saved as a snapshot plus a
+ * journal of the changes since. Every change appends one journal record. On
+ * world saves, and once the journal outgrows the snapshot, a background
+ * thread rewrites the snapshot and drops the journals it covers.
+ *
+ * <p>
+ * Journals are numbered. Each snapshot starts a new journal, so the snapshot
+ * write never races appends, and a crash at any point leaves a snapshot and
+ * journals that replay to the latest state.
+ * </p>
+ *
+ * <p>
+ * Hooks are kept as uncompressed NBT bytes and only inflated when their
+ * owner joins. Owners are evicted oldest first once their hooks pass the
+ * age limit, or while the store is over its memory budget, and each owner
+ * keeps only their newest hooks. Evictions of whole owners are journaled,
+ * the per-owner limit is simply applied again on replay.
+ * </p>
+ */
+public class PendingHookStore {
+
+    private static final String SNAPSHOT_NAME = "unspawnedHooks.dat";
+    private static final String LEGACY_SNAPSHOT_NAME = "unspawnedHooks.json";
+    private static final String JOURNAL_PREFIX = "unspawnedHooks.journal.";
+    // don't bother compacting tiny journals
+    private static final int MIN_COMPACT_RECORDS = 1024;
+    // rough heap cost of a byte[] plus its entry and list slot, and of an
+    // owner
+    private static final int ENTRY_OVERHEAD = 48;
+    private static final int OWNER_OVERHEAD = 112;
+
+    private final Path directory;
+    private final Path snapshotFile;
+    // in access order, owners are only accessed when adding
+    private final Map<UUID, OwnerHooks> owners =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService writer = Executors
+            .newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("LudicrousHooks pending hook writer")
+                    .build());
+    // the next snapshot to write, newer snapshots replace it
+    private final AtomicReference<Snapshot> queuedSnapshot =
+            new AtomicReference<>();
+    private Future<?> lastWrite = CompletableFuture.completedFuture(null);
+    private CompletableFuture<Void> loading;
+    private boolean loaded;
+    // null if loading failed, changes are then kept in memory only
+    private PendingHookJournal journal;
+    private long generation;
+    private volatile int maxPerOwner = Integer.MAX_VALUE;
+    private volatile long memoryBudget = Long.MAX_VALUE;
+    private volatile long maxAgeMillis;
+    private int entryCount;
+    private long memoryUsage;
+    private long evictions;
+
+    public PendingHookStore(Path directory) {
+        this.directory = directory;
+        this.snapshotFile = directory.resolve(SNAPSHOT_NAME);
+    }
+
+    /**
+     * Sets the eviction limits, applied from the next change on.
+     *
+     * @param maxPerOwner
+     *            - The most hooks kept for one owner
+     * @param memoryBudget
+     *            - The estimated heap size, in bytes, the store keeps to
+     * @param maxAgeMillis
+     *            - How long an owner's hooks are kept after the last one was
+     *            added, or 0 to keep them forever
+     */
+    public void setLimits(int maxPerOwner, long memoryBudget,
+            long maxAgeMillis) {
+        this.maxPerOwner = maxPerOwner;
+        this.memoryBudget = memoryBudget;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Starts loading the store on the writer thread. The first call that
+     * needs the hooks waits for it, if it hasn't finished by then.
+     *
+     * <p>
+     * There is nothing to fetch ahead for a player that connects. The
+     * snapshot is a single deflate stream, so no owner's hooks are ready
+     * before the whole store is, and once it is, {@link #take} only inflates
+     * that owner's few hooks.
+     * </p>
+     */
+    public CompletableFuture<Void> startLoading() {
+        this.loading = CompletableFuture.runAsync(() -> {
+            try {
+                load();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, this.writer);
+        return this.loading;
+    }
+
+    private void awaitLoaded() {
+        if (this.loaded) {
+            return;
+        }
+        this.loaded = true;
+        if (!this.loading.isDone()) {
+            LudicrousHooks.LOGGER.info("Waiting for pending hooks to load");
+        }
+        try {
+            this.loading.join();
+        } catch (CompletionException e) {
+            LudicrousHooks.LOGGER.error("Error loading pending hooks, "
+                    + "changes to them won't be saved", e.getCause());
+        }
+    }
+
+    /**
+     * Loads the snapshot, replays the journals on top and opens a new
+     * journal.
+     */
+    private void load() throws IOException {
+        Files.createDirectories(this.directory);
+        PendingHookJournal.Visitor replay = new PendingHookJournal.Visitor() {
+
+            @Override
+            public void add(UUID owner, byte[] hook, long addedMillis) {
+                put(owner, hook, addedMillis);
+            }
+
+            @Override
+            public void removeOwner(UUID owner) {
+                PendingHookStore.this.removeOwner(owner);
+            }
+
+        };
+        Path legacySnapshot = this.directory.resolve(LEGACY_SNAPSHOT_NAME);
+        if (Files.exists(this.snapshotFile)) {
+            try {
+                PendingHookSnapshots.read(this.snapshotFile, replay);
+            } catch (Exception e) {
+                discardSnapshot(this.snapshotFile, e);
+            }
+        } else if (Files.exists(legacySnapshot)) {
+            // the old snapshot has no add times, its hooks are at least
+            // this old
+            long snapshotMillis =
+                    Files.getLastModifiedTime(legacySnapshot).toMillis();
+            try {
+                PendingHookSnapshots.readJson(legacySnapshot, snapshotMillis,
+                        replay);
+            } catch (Exception e) {
+                discardSnapshot(legacySnapshot, e);
+            }
+        }
+        long lastGeneration = -1;
+        for (long generation : listJournals()) {
+            try {
+                PendingHookJournal.replay(getJournalFile(generation), replay);
+            } catch (IOException e) {
+                LudicrousHooks.LOGGER.warn("Error replaying pending hook "
+                        + "journal " + generation + ", skipping it", e);
+            }
+            lastGeneration = generation;
+        }
+        evict(System.currentTimeMillis(), null);
+        this.generation = lastGeneration + 1;
+        this.journal = new PendingHookJournal(getJournalFile(this.generation));
+    }
+
+    private void discardSnapshot(Path file, Exception e) throws IOException {
+        LudicrousHooks.LOGGER.warn(
+                "Error loading unspawned hooks, backing up and deleting file",
+                e);
+        clear();
+        Files.move(file, file.resolveSibling(file.getFileName() + ".bak"),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path getJournalFile(long generation) {
+        return this.directory.resolve(JOURNAL_PREFIX + generation);
+    }
+
+    /**
+     * Returns the journal generations on disk, oldest first.
+     */
+    private List<Long> listJournals() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                this.directory, JOURNAL_PREFIX + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString()
+                        .substring(JOURNAL_PREFIX.length());
+                try {
+                    generations.add(Long.parseLong(suffix));
+                } catch (NumberFormatException e) {
+                    // not ours
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static byte[] toBytes(NBTTagCompound hook) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            CompressedStreamTools.write(hook, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // not from a byte array
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static NBTTagCompound fromBytes(byte[] hook) throws IOException {
+        return CompressedStreamTools
+                .read(new DataInputStream(new ByteArrayInputStream(hook)));
+    }
+
+    private static long sizeOf(byte[] hook) {
+        return hook.length + ENTRY_OVERHEAD;
+    }
+
+    public void add(UUID owner, NBTTagCompound hook) {
+        awaitLoaded();
+        byte[] data = toBytes(hook);
+        long now = System.currentTimeMillis();
+        if (!put(owner, data, now)) {
+            return;
+        }
+        if (this.journal != null) {
+            try {
+                this.journal.appendAdd(owner, data, now);
+            } catch (IOException e) {
+                LudicrousHooks.LOGGER.warn("Error journaling pending hook",
+                        e);
+            }
+        }
+        evict(now, owner);
+        compactIfNeeded();
+    }
+
+    /**
+     * Adds a hook, dropping the owner's oldest if they're over the limit.
+     *
+     * @return {@code false} if the owner already had that hook
+     */
+    private boolean put(UUID owner, byte[] hook, long addedMillis) {
+        OwnerHooks hooks = this.owners.get(owner);
+        if (hooks == null) {
+            hooks = new OwnerHooks();
+            this.owners.put(owner, hooks);
+            this.memoryUsage += OWNER_OVERHEAD;
+        }
+        for (PendingHookSnapshots.Entry existing : hooks.entries) {
+            if (Arrays.equals(existing.nbt, hook)) {
+                return false;
+            }
+        }
+        hooks.entries.add(new PendingHookSnapshots.Entry(hook, addedMillis));
+        hooks.lastAddedMillis = Math.max(hooks.lastAddedMillis, addedMillis);
+        this.entryCount++;
+        this.memoryUsage += sizeOf(hook);
+        if (hooks.entries.size() > this.maxPerOwner) {
+            PendingHookSnapshots.Entry dropped = hooks.entries.remove(0);
+            this.entryCount--;
+            this.memoryUsage -= sizeOf(dropped.nbt);
+            this.evictions++;
+        }
+        return true;
+    }
+
+    private OwnerHooks removeOwner(UUID owner) {
+        OwnerHooks hooks = this.owners.remove(owner);
+        if (hooks != null) {
+            forget(hooks);
+        }
+        return hooks;
+    }
+
+    private void forget(OwnerHooks hooks) {
+        this.entryCount -= hooks.entries.size();
+        this.memoryUsage -= OWNER_OVERHEAD;
+        for (PendingHookSnapshots.Entry hook : hooks.entries) {
+            this.memoryUsage -= sizeOf(hook.nbt);
+        }
+    }
+
+    private void clear() {
+        this.owners.clear();
+        this.entryCount = 0;
+        this.memoryUsage = 0;
+    }
+
+    /**
+     * Evicts owners, oldest first, that are too old or don't fit the memory
+     * budget. {@code keep} is never evicted for the budget.
+     */
+    private void evict(long now, UUID keep) {
+        long maxAge = this.maxAgeMillis;
+        Iterator<Map.Entry<UUID, OwnerHooks>> iter =
+                this.owners.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<UUID, OwnerHooks> eldest = iter.next();
+            boolean expired = maxAge > 0
+                    && now - eldest.getValue().lastAddedMillis > maxAge;
+            boolean overBudget = this.memoryUsage > this.memoryBudget
+                    && !eldest.getKey().equals(keep);
+            if (!expired && !overBudget) {
+                break;
+            }
+            iter.remove();
+            forget(eldest.getValue());
+            this.evictions++;
+            if (this.journal != null) {
+                try {
+                    this.journal.appendRemoveOwner(eldest.getKey());
+                } catch (IOException e) {
+                    LudicrousHooks.LOGGER.warn("Error journaling evicted "
+                            + "hooks", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code owner} has hooks pending.
+     */
+    public boolean contains(UUID owner) {
+        awaitLoaded();
+        return this.owners.containsKey(owner);
+    }
+
+    /**
+     * Removes and returns the hooks pending for {@code owner}.
+     */
+    public List<NBTTagCompound> take(UUID owner) {
+        awaitLoaded();
+        OwnerHooks hooks = removeOwner(owner);
+        if (hooks == null) {
+            return ImmutableList.of();
+        }
+        if (this.journal != null) {
+            try {
+                this.journal.appendRemoveOwner(owner);
+            } catch (IOException e) {
+                LudicrousHooks.LOGGER.warn("Error journaling restored hooks",
+                        e);
+            }
+        }
+        compactIfNeeded();
+        List<NBTTagCompound> taken = new ArrayList<>(hooks.entries.size());
+        for (PendingHookSnapshots.Entry hook : hooks.entries) {
+            try {
+                taken.add(fromBytes(hook.nbt));
+            } catch (IOException e) {
+                LudicrousHooks.LOGGER.warn("Dropping unreadable pending hook",
+                        e);
+            }
+        }
+        return taken;
+    }
+
+    private void compactIfNeeded() {
+        if (this.journal == null) {
+            return;
+        }
+        int records = this.journal.getRecordCount();
+        if (records < MIN_COMPACT_RECORDS || records < this.entryCount
+                || !this.lastWrite.isDone()) {
+            return;
+        }
+        saveSnapshot();
+    }
+
+    /**
+     * Snapshots the store and queues the snapshot for writing. Only the
+     * newest queued snapshot is written, so back-to-back saves coalesce.
+     */
+    public void saveSnapshot() {
+        awaitLoaded();
+        evict(System.currentTimeMillis(), null);
+        if (this.journal == null || this.journal.getRecordCount() == 0) {
+            // the last snapshot has everything
+            return;
+        }
+        // the arrays are never modified, so sharing them is safe
+        ImmutableList.Builder<PendingHookSnapshots.Owner> owners =
+                ImmutableList.builder();
+        this.owners.forEach((owner, h) -> owners.add(
+                new PendingHookSnapshots.Owner(owner,
+                        ImmutableList.copyOf(h.entries))));
+        Snapshot snapshot = new Snapshot(owners.build(), this.generation);
+        try {
+            // later changes go to a journal the snapshot doesn't cover
+            this.journal.close();
+            this.generation++;
+            this.journal =
+                    new PendingHookJournal(getJournalFile(this.generation));
+        } catch (IOException e) {
+            LudicrousHooks.LOGGER.warn("Error starting a new pending hook "
+                    + "journal", e);
+            return;
+        }
+        if (this.queuedSnapshot.getAndSet(snapshot) == null) {
+            this.lastWrite = this.writer.submit(this::writeQueuedSnapshot);
+        }
+    }
+
+    private void writeQueuedSnapshot() {
+        Snapshot snapshot = this.queuedSnapshot.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        Path temp = this.snapshotFile.resolveSibling(SNAPSHOT_NAME + ".tmp");
+        try {
+            PendingHookSnapshots.write(temp, snapshot.owners);
+            Files.move(temp, this.snapshotFile,
+                    StandardCopyOption.ATOMIC_MOVE);
+            // replaced by the new format
+            Files.deleteIfExists(
+                    this.directory.resolve(LEGACY_SNAPSHOT_NAME));
+            for (long generation : listJournals()) {
+                if (generation <= snapshot.lastGeneration) {
+                    Files.delete(getJournalFile(generation));
+                }
+            }
+        } catch (IOException e) {
+            // the journals are still there, try again next time
+            LudicrousHooks.LOGGER.warn("Error saving pending hooks", e);
+        }
+    }
+
+    /**
+     * Waits for the last queued snapshot to be written.
+     */
+    public void awaitWrites() {
+        try {
+            this.lastWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LudicrousHooks.LOGGER.warn("Error saving pending hooks",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Waits for loading and the last queued snapshot, then closes the journal
+     * and stops the writer thread. The store can't be used after this.
+     */
+    public void close() {
+        awaitLoaded();
+        awaitWrites();
+        this.writer.shutdown();
+        if (this.journal == null) {
+            return;
+        }
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            LudicrousHooks.LOGGER.warn("Error closing the pending hook journal",
+                    e);
+        }
+        this.journal = null;
+    }
+
+    public int getOwnerCount() {
+        return this.owners.size();
+    }
+
+    public int getEntryCount() {
+        return this.entryCount;
+    }
+
+    /**
+     * Returns the estimated heap size of the stored hooks, in bytes.
+     */
+    public long getMemoryUsage() {
+        return this.memoryUsage;
+    }
+
+    /**
+     * Returns the number of hooks and owners evicted by the limits.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    private static final class OwnerHooks {
+
+        // oldest first
+        private final List<PendingHookSnapshots.Entry> entries =
+                new ArrayList<>(2);
+        // the newest entry's add time
+        private long lastAddedMillis;
+
+    }
+
+    private static final class Snapshot {
+
+        private final List<PendingHookSnapshots.Owner> owners;
+        // the newest journal this snapshot includes
+        private final long lastGeneration;
+
+        Snapshot(List<PendingHookSnapshots.Owner> owners,
+                long lastGeneration) {
+            this.owners = owners;
+            this.lastGeneration = lastGeneration;
+        }
+
+    }
+
+}
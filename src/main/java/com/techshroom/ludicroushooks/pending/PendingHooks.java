@@ -0,0 +1,157 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.pending;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.techshroom.ludicroushooks.Constants;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.util.Constants.NBT;
+
+/**
+ * Player capability holding the player's hooks while they can't be in the
+ * world, such as while the player is logged out. It's saved with the player,
+ * so it's only in memory while they're online.
+ */
+public class PendingHooks {
+
+    @CapabilityInject(PendingHooks.class)
+    public static Capability<PendingHooks> CAPABILITY = null;
+
+    public static final ResourceLocation ID =
+            new ResourceLocation(Constants.MOD_ID, "pending_hooks");
+
+    public static void register() {
+        CapabilityManager.INSTANCE.register(PendingHooks.class, new Storage(),
+                PendingHooks::new);
+    }
+
+    private final List<NBTTagCompound> hooks = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return this.hooks.isEmpty();
+    }
+
+    public void add(NBTTagCompound hook) {
+        this.hooks.add(hook);
+    }
+
+    /**
+     * Removes and returns all pending hooks.
+     */
+    public List<NBTTagCompound> take() {
+        if (this.hooks.isEmpty()) {
+            return ImmutableList.of();
+        }
+        List<NBTTagCompound> taken = ImmutableList.copyOf(this.hooks);
+        this.hooks.clear();
+        return taken;
+    }
+
+    public void copyFrom(PendingHooks other) {
+        this.hooks.clear();
+        this.hooks.addAll(other.hooks);
+    }
+
+    public NBTTagList serializeNBT() {
+        NBTTagList list = new NBTTagList();
+        this.hooks.forEach(list::appendTag);
+        return list;
+    }
+
+    public void deserializeNBT(NBTTagList list) {
+        this.hooks.clear();
+        for (int i = 0; i < list.tagCount(); i++) {
+            this.hooks.add(list.getCompoundTagAt(i));
+        }
+    }
+
+    private static final class Storage
+            implements Capability.IStorage<PendingHooks> {
+
+        @Override
+        public NBTBase writeNBT(Capability<PendingHooks> capability,
+                PendingHooks instance, EnumFacing side) {
+            return instance.serializeNBT();
+        }
+
+        @Override
+        public void readNBT(Capability<PendingHooks> capability,
+                PendingHooks instance, EnumFacing side, NBTBase nbt) {
+            if (nbt instanceof NBTTagList && ((NBTTagList) nbt)
+                    .getTagType() == NBT.TAG_COMPOUND) {
+                instance.deserializeNBT((NBTTagList) nbt);
+            }
+        }
+
+    }
+
+    /**
+     * Attaches a {@link PendingHooks} to an entity.
+     */
+    public static final class Provider
+            implements ICapabilitySerializable<NBTTagList> {
+
+        private final PendingHooks instance = new PendingHooks();
+
+        @Override
+        public boolean hasCapability(Capability<?> capability,
+                EnumFacing facing) {
+            return capability == CAPABILITY;
+        }
+
+        @Override
+        public <T> T getCapability(Capability<T> capability,
+                EnumFacing facing) {
+            return capability == CAPABILITY ? CAPABILITY.cast(this.instance)
+                    : null;
+        }
+
+        @Override
+        public NBTTagList serializeNBT() {
+            return this.instance.serializeNBT();
+        }
+
+        @Override
+        public void deserializeNBT(NBTTagList nbt) {
+            if (nbt.getTagType() == NBT.TAG_COMPOUND) {
+                this.instance.deserializeNBT(nbt);
+            }
+        }
+
+    }
+
+}
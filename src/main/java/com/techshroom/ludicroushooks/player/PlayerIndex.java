@@ -0,0 +1,84 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.player;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Maps player UUIDs to their current player entity. Entities are only weakly
+ * held, so a missed removal can't keep an old player or its world alive.
+ * There is one index per side, and each should only be used from its own
+ * thread.
+ */
+public class PlayerIndex {
+
+    private final Map<UUID, WeakReference<EntityPlayer>> players =
+            new HashMap<>();
+
+    /**
+     * Makes {@code player} the current entity for its UUID.
+     */
+    public void put(EntityPlayer player) {
+        this.players.put(player.getUniqueID(), new WeakReference<>(player));
+    }
+
+    /**
+     * Removes {@code player}, unless its UUID is already mapped to a newer
+     * entity.
+     */
+    public void remove(EntityPlayer player) {
+        UUID id = player.getUniqueID();
+        WeakReference<EntityPlayer> ref = this.players.get(id);
+        if (ref != null && (ref.get() == player || ref.get() == null)) {
+            this.players.remove(id);
+        }
+    }
+
+    /**
+     * Returns the player entity for {@code id}, or {@code null} if the player
+     * isn't known.
+     */
+    public EntityPlayer get(UUID id) {
+        WeakReference<EntityPlayer> ref = this.players.get(id);
+        if (ref == null) {
+            return null;
+        }
+        EntityPlayer player = ref.get();
+        if (player == null) {
+            this.players.remove(id);
+        }
+        return player;
+    }
+
+    public void clear() {
+        this.players.clear();
+    }
+
+}
@@ -36,14 +36,18 @@ import com.techshroom.ludicroushooks.Constants;
 import com.techshroom.ludicroushooks.LudicrousHooks;
 import com.techshroom.ludicroushooks.entity.EntityHook;
 import com.techshroom.ludicroushooks.entity.render.HookRenderer;
+import com.techshroom.ludicroushooks.network.HookEventsMessage;
+import com.techshroom.ludicroushooks.world.HookWorld;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.block.model.IBakedModel;
 import net.minecraft.client.renderer.block.model.ModelManager;
 import net.minecraft.client.renderer.block.model.ModelResourceLocation;
 import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.entity.Entity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.World;
 import net.minecraftforge.client.event.ModelBakeEvent;
 import net.minecraftforge.client.event.ModelRegistryEvent;
 import net.minecraftforge.client.event.RenderSpecificHandEvent;
@@ -133,4 +137,37 @@ public class ClientProxy implements Proxy {
         return Minecraft.getMinecraft().thePlayer.getUniqueID().equals(owner);
     }
 
+    @Override
+    public void handleHookEvents(HookEventsMessage message) {
+        Minecraft mc = Minecraft.getMinecraft();
+        mc.addScheduledTask(() -> {
+            World world = mc.theWorld;
+            if (world == null) {
+                return;
+            }
+            for (int i = 0; i < message.size(); i++) {
+                Entity entity = world.getEntityByID(message.getEntityId(i));
+                if (entity instanceof EntityHook) {
+                    ((EntityHook) entity).applyState(message.getState(i));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void clearClientAttachIndex() {
+        Minecraft mc = Minecraft.getMinecraft();
+        mc.addScheduledTask(() -> {
+            World world = mc.theWorld;
+            if (world == null) {
+                return;
+            }
+            HookWorld hookWorld =
+                    LudicrousHooks.getInstance().getExistingHookWorld(world);
+            if (hookWorld != null) {
+                hookWorld.getAttachIndex().clear();
+            }
+        });
+    }
+
 }
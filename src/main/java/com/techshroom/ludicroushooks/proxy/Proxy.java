@@ -26,6 +26,8 @@ package com.techshroom.ludicroushooks.proxy;
 
 import java.util.UUID;
 
+import com.techshroom.ludicroushooks.network.HookEventsMessage;
+
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 
 public interface Proxy {
@@ -34,4 +36,14 @@ public interface Proxy {
 
     boolean thisClientIsUUID(UUID owner);
 
+    /**
+     * Applies hook state changes from the server, on the main thread.
+     */
+    void handleHookEvents(HookEventsMessage message);
+
+    /**
+     * Clears the client world's attach index, on the main thread.
+     */
+    void clearClientAttachIndex();
+
 }
@@ -26,6 +26,8 @@ package com.techshroom.ludicroushooks.proxy;
 
 import java.util.UUID;
 
+import com.techshroom.ludicroushooks.network.HookEventsMessage;
+
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 
 public class ServerProxy implements Proxy {
@@ -39,4 +41,12 @@ public class ServerProxy implements Proxy {
         return false;
     }
 
+    @Override
+    public void handleHookEvents(HookEventsMessage message) {
+    }
+
+    @Override
+    public void clearClientAttachIndex() {
+    }
+
 }
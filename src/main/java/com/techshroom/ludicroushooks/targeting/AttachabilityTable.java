@@ -0,0 +1,113 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.targeting;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockLiquid;
+import net.minecraft.block.state.IBlockState;
+
+/**
+ * Answers how hooks interact with block states using bitsets indexed by
+ * {@link Block#getStateId}. The table is compiled from the config rules
+ * whenever the rules or block IDs change, so checks are a single lookup.
+ * Only states that can be stored as metadata have an ID, so properties of
+ * the actual state, such as fence connections, can't be told apart.
+ */
+public final class AttachabilityTable {
+
+    // Block IDs are 12 bits, metadata is 4
+    private static final int STATE_ID_COUNT = 1 << 16;
+
+    /**
+     * Built-in attach rule, applied before the config rules.
+     */
+    public static boolean isAttachableByDefault(IBlockState state) {
+        // not liquids
+        // full cubes
+        // or opaque non-cubes
+        return !(state.getBlock() instanceof BlockLiquid)
+                && (state.isFullCube() || state.getMaterial().isOpaque());
+    }
+
+    /**
+     * Built-in rule for states that stop a hook in flight.
+     */
+    public static boolean isBlockingByDefault(IBlockState state) {
+        return state.getMaterial().blocksMovement()
+                && state.getBlock().canCollideCheck(state, false);
+    }
+
+    /**
+     * Compiles a table for all registered block states. A state is
+     * attachable if the built-in rule or any {@code allow} rule accepts it,
+     * and no {@code deny} rule does.
+     */
+    public static AttachabilityTable compile(
+            List<? extends Predicate<IBlockState>> allow,
+            List<? extends Predicate<IBlockState>> deny) {
+        long[] attachable = new long[STATE_ID_COUNT >> 6];
+        long[] blocking = new long[STATE_ID_COUNT >> 6];
+        for (IBlockState state : Block.BLOCK_STATE_IDS) {
+            int id = Block.getStateId(state);
+            boolean canAttach = isAttachableByDefault(state)
+                    || allow.stream().anyMatch(r -> r.test(state));
+            canAttach &= deny.stream().noneMatch(r -> r.test(state));
+            if (canAttach) {
+                attachable[id >>> 6] |= 1L << id;
+            }
+            if (isBlockingByDefault(state)) {
+                blocking[id >>> 6] |= 1L << id;
+            }
+        }
+        return new AttachabilityTable(attachable, blocking);
+    }
+
+    private final long[] attachable;
+    private final long[] blocking;
+
+    private AttachabilityTable(long[] attachable, long[] blocking) {
+        this.attachable = attachable;
+        this.blocking = blocking;
+    }
+
+    public boolean canAttachTo(IBlockState state) {
+        return isSet(this.attachable, Block.getStateId(state));
+    }
+
+    /**
+     * Returns {@code true} if the state stops a hook in flight.
+     */
+    public boolean blocksHook(IBlockState state) {
+        return isSet(this.blocking, Block.getStateId(state));
+    }
+
+    private static boolean isSet(long[] bits, int id) {
+        return (bits[id >>> 6] & (1L << id)) != 0;
+    }
+
+}
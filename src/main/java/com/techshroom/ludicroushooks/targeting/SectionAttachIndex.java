@@ -0,0 +1,296 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.targeting;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Per-world cache of 4096-bit bitmaps, one per 16x16x16 chunk section,
+ * marking the blocks a hook stops at. Bitmaps are built lazily the first time
+ * a ray enters a section, kept up to date on block changes, and dropped when
+ * the chunk unloads. Sections with nothing to hit have no bitmap, so rays can
+ * pass through them without reading any block states.
+ *
+ * <p>
+ * Block changes are only seen when the world notifies its listeners, which
+ * it doesn't for blocks set without flag 2. To cover those, a set bit is
+ * checked against the block state before it's trusted, and an empty section
+ * is rebuilt once its storage is no longer all air. A block that stops hooks
+ * set quietly into a section that already had other blocks is missed until
+ * the chunk reloads.
+ * </p>
+ */
+public class SectionAttachIndex {
+
+    /**
+     * The bitmap of one chunk section. Bit {@code y << 8 | z << 4 | x} is set
+     * if a hook stops at that block.
+     */
+    public static final class Section {
+
+        private final ExtendedBlockStorage storage;
+        // null when no bits are set
+        private long[] bits;
+        // built while the storage was all air
+        private final boolean air;
+
+        private Section(ExtendedBlockStorage storage, long[] bits,
+                boolean air) {
+            this.storage = storage;
+            this.bits = bits;
+            this.air = air;
+        }
+
+        public ExtendedBlockStorage getStorage() {
+            return this.storage;
+        }
+
+        /**
+         * Returns {@code true} if no block in this section stops a hook.
+         */
+        public boolean isEmpty() {
+            return this.bits == null;
+        }
+
+        public boolean isSet(int x, int y, int z) {
+            int index = index(x, y, z);
+            return this.bits != null
+                    && (this.bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /**
+         * Returns how many blocks past {@code x} are clear, going along X in
+         * the direction of {@code step}, up to the edge of the section.
+         */
+        public int getClearRunX(int x, int y, int z, int step) {
+            int index = index(x, y, z);
+            long word = this.bits == null ? 0 : this.bits[index >>> 6];
+            // each word holds four rows of 16 blocks along X
+            int bit = index & 63;
+            int rowX = bit & 15;
+            if (step > 0) {
+                long ahead =
+                        (word >>> bit >>> 1) & ((1L << (15 - rowX)) - 1);
+                return ahead == 0 ? 15 - rowX
+                        : Long.numberOfTrailingZeros(ahead);
+            }
+            long behind =
+                    word & ((1L << bit) - 1) & -(1L << (bit - rowX));
+            return behind == 0 ? rowX
+                    : bit - 64 + Long.numberOfLeadingZeros(behind);
+        }
+
+    }
+
+    private static final Section NULL_SECTION =
+            new Section(null, null, false);
+    private static final int BITMAP_WORDS = 4096 >> 6;
+    // long[64] plus array header
+    private static final long BITMAP_BYTES = BITMAP_WORDS * 8 + 16;
+    // Section object, map entry and boxed key
+    private static final long SECTION_BYTES = 24 + 48 + 24;
+
+    private static int index(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    private static long key(int chunkX, int sectionY, int chunkZ) {
+        return (chunkX & 0x3FFFFFFL) << 30 | (chunkZ & 0x3FFFFFFL) << 4
+                | (sectionY & 15);
+    }
+
+    private final Map<Long, Section> sections = new HashMap<>();
+    private final Predicate<IBlockState> stopAt;
+    private int bitmapCount;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * @param stopAt
+     *            - Selects the block states that stop a hook
+     */
+    public SectionAttachIndex(Predicate<IBlockState> stopAt) {
+        this.stopAt = stopAt;
+    }
+
+    public Predicate<IBlockState> getStopPredicate() {
+        return this.stopAt;
+    }
+
+    /**
+     * Returns the bitmap for a section of a loaded chunk, building it if
+     * needed.
+     */
+    public Section getSection(Chunk chunk, int sectionY) {
+        ExtendedBlockStorage storage =
+                chunk.getBlockStorageArray()[sectionY];
+        Long key = key(chunk.xPosition, sectionY, chunk.zPosition);
+        Section section = this.sections.get(key);
+        if (section != null && section.storage == storage
+                && !(section.air && !storage.isEmpty())) {
+            this.hits++;
+            return section;
+        }
+        this.misses++;
+        if (section != null && section.bits != null) {
+            // storage was replaced under us
+            this.bitmapCount--;
+        }
+        if (section != null && section.storage == storage) {
+            // blocks were set without telling the listeners
+            this.invalidations++;
+        }
+        section = build(storage);
+        if (section.bits != null) {
+            this.bitmapCount++;
+        }
+        this.sections.put(key, section);
+        return section;
+    }
+
+    private Section build(ExtendedBlockStorage storage) {
+        if (storage == Chunk.NULL_BLOCK_STORAGE) {
+            return NULL_SECTION;
+        }
+        if (storage.isEmpty()) {
+            return new Section(storage, null, true);
+        }
+        long[] bits = null;
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    if (this.stopAt.test(storage.get(x, y, z))) {
+                        if (bits == null) {
+                            bits = new long[BITMAP_WORDS];
+                        }
+                        int index = index(x, y, z);
+                        bits[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+        return new Section(storage, bits, false);
+    }
+
+    /**
+     * Checks a set bit against the block state read from the section. If
+     * the block no longer stops hooks, the bit is cleared.
+     *
+     * @return {@code true} if the block stops hooks
+     */
+    public boolean verify(Section section, int x, int y, int z,
+            IBlockState state) {
+        if (this.stopAt.test(state)) {
+            return true;
+        }
+        // changed without telling the listeners
+        this.invalidations++;
+        int index = index(x, y, z);
+        section.bits[index >>> 6] &= ~(1L << index);
+        return false;
+    }
+
+    /**
+     * Updates the bitmap for a changed block, if it has been built.
+     */
+    public void onBlockChanged(BlockPos pos, IBlockState oldState,
+            IBlockState newState) {
+        if (pos.getY() < 0 || pos.getY() >= 256) {
+            return;
+        }
+        Long key = key(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+        Section section = this.sections.get(key);
+        boolean stops = this.stopAt.test(newState);
+        if (section == null || stops == this.stopAt.test(oldState)) {
+            return;
+        }
+        this.invalidations++;
+        if (section.bits == null) {
+            // first block to set, rebuild when it's next needed
+            this.sections.remove(key);
+            return;
+        }
+        int index = index(pos.getX(), pos.getY(), pos.getZ());
+        if (stops) {
+            section.bits[index >>> 6] |= 1L << index;
+        } else {
+            section.bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Drops all sections of an unloaded chunk.
+     */
+    public void onChunkUnloaded(int chunkX, int chunkZ) {
+        for (int y = 0; y < 16; y++) {
+            Section section = this.sections.remove(key(chunkX, y, chunkZ));
+            if (section != null && section.bits != null) {
+                this.bitmapCount--;
+            }
+        }
+    }
+
+    public void clear() {
+        this.sections.clear();
+        this.bitmapCount = 0;
+    }
+
+    public int getSectionCount() {
+        return this.sections.size();
+    }
+
+    public int getBitmapCount() {
+        return this.bitmapCount;
+    }
+
+    /**
+     * Returns an estimate of the heap used by the index, in bytes.
+     */
+    public long getMemoryUsage() {
+        return this.sections.size() * SECTION_BYTES
+                + this.bitmapCount * BITMAP_BYTES;
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getInvalidations() {
+        return this.invalidations;
+    }
+
+}
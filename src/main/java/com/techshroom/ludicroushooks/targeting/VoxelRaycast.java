@@ -0,0 +1,478 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.targeting;
+
+import com.techshroom.ludicroushooks.targeting.SectionAttachIndex.Section;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * Walks the voxels along a ray (Amanatides & Woo) and stops at the first
+ * block marked in the {@link SectionAttachIndex}. Block states are read
+ * straight from loaded chunk storage, and only for marked blocks. The ray
+ * ends at the first unloaded chunk, or after a set number of voxels.
+ * Sections with no marked blocks are crossed in one step, and clear runs
+ * along X are found from the bitmap words instead of checking each voxel.
+ *
+ * <p>
+ * The walk can be advanced a bounded distance at a time. Stepping is done on
+ * primitives only, the only allocations happen when a partial block has to
+ * be checked against its bounding box.
+ * </p>
+ */
+public class VoxelRaycast {
+
+    private static final int WORLD_HEIGHT = 256;
+
+    private final double originX;
+    private final double originY;
+    private final double originZ;
+    private final double dirX;
+    private final double dirY;
+    private final double dirZ;
+    private final double maxDistance;
+    private final int maxVoxels;
+    private final SectionAttachIndex index;
+
+    private final int stepX;
+    private final int stepY;
+    private final int stepZ;
+    private final double tDeltaX;
+    private final double tDeltaY;
+    private final double tDeltaZ;
+    private final int startX;
+    private final int startY;
+    private final int startZ;
+    private int voxelX;
+    private int voxelY;
+    private int voxelZ;
+    private double tMaxX;
+    private double tMaxY;
+    private double tMaxZ;
+    // distance the ray entered the current voxel at, and through which face
+    private double voxelDistance;
+    private EnumFacing voxelFace;
+    private double marched;
+    private boolean startChecked;
+    private boolean finished;
+
+    private boolean hit;
+    private double hitX;
+    private double hitY;
+    private double hitZ;
+    private double hitDistance;
+    private EnumFacing hitFace;
+    private IBlockState hitState;
+
+    private Section cachedSection;
+    private int cachedChunkX;
+    private int cachedSectionY;
+    private int cachedChunkZ;
+
+    /**
+     * @param originX
+     *            - The X coordinate of the ray origin
+     * @param originY
+     *            - The Y coordinate of the ray origin
+     * @param originZ
+     *            - The Z coordinate of the ray origin
+     * @param dirX
+     *            - The X component of the unit direction
+     * @param dirY
+     *            - The Y component of the unit direction
+     * @param dirZ
+     *            - The Z component of the unit direction
+     * @param maxDistance
+     *            - The distance, in blocks, at which the ray gives up
+     * @param maxVoxels
+     *            - The number of voxels past the first at which the ray
+     *            gives up
+     * @param index
+     *            - The index of blocks that end the ray
+     */
+    public VoxelRaycast(double originX, double originY, double originZ,
+            double dirX, double dirY, double dirZ, double maxDistance,
+            int maxVoxels, SectionAttachIndex index) {
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.dirX = dirX;
+        this.dirY = dirY;
+        this.dirZ = dirZ;
+        this.maxDistance = maxDistance;
+        this.maxVoxels = maxVoxels;
+        this.index = index;
+
+        this.voxelX = this.startX = floor(originX);
+        this.voxelY = this.startY = floor(originY);
+        this.voxelZ = this.startZ = floor(originZ);
+        this.stepX = (int) Math.signum(dirX);
+        this.stepY = (int) Math.signum(dirY);
+        this.stepZ = (int) Math.signum(dirZ);
+        this.tDeltaX = inverse(dirX);
+        this.tDeltaY = inverse(dirY);
+        this.tDeltaZ = inverse(dirZ);
+        this.tMaxX = boundaryDistance(originX, this.voxelX, dirX);
+        this.tMaxY = boundaryDistance(originY, this.voxelY, dirY);
+        this.tMaxZ = boundaryDistance(originZ, this.voxelZ, dirZ);
+    }
+
+    private static int floor(double d) {
+        int i = (int) d;
+        return d < i ? i - 1 : i;
+    }
+
+    private static double inverse(double dir) {
+        return dir == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dir);
+    }
+
+    private static double boundaryDistance(double origin, int voxel,
+            double dir) {
+        if (dir > 0) {
+            return (voxel + 1 - origin) / dir;
+        } else if (dir < 0) {
+            return (voxel - origin) / dir;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * Returns {@code true} if the ray stopped at a block.
+     */
+    public boolean isHit() {
+        return this.hit;
+    }
+
+    public double getHitX() {
+        return this.hitX;
+    }
+
+    public double getHitY() {
+        return this.hitY;
+    }
+
+    public double getHitZ() {
+        return this.hitZ;
+    }
+
+    /**
+     * Returns the distance from the origin to the hit position.
+     */
+    public double getHitDistance() {
+        return this.hitDistance;
+    }
+
+    public int getBlockX() {
+        return this.voxelX;
+    }
+
+    public int getBlockY() {
+        return this.voxelY;
+    }
+
+    public int getBlockZ() {
+        return this.voxelZ;
+    }
+
+    /**
+     * Returns the face of the block that the ray hit.
+     */
+    public EnumFacing getFace() {
+        return this.hitFace;
+    }
+
+    public IBlockState getState() {
+        return this.hitState;
+    }
+
+    /**
+     * Advances the ray by at most {@code distance} blocks.
+     *
+     * @return {@code true} if the ray is finished
+     */
+    public boolean advance(World world, double distance) {
+        if (this.finished) {
+            return true;
+        }
+        try {
+            if (!this.startChecked) {
+                this.startChecked = true;
+                if (checkVoxel(world)) {
+                    return true;
+                }
+            }
+            double limit = Math.min(this.marched + distance, this.maxDistance);
+            while (!this.finished) {
+                if (!next(limit)) {
+                    this.marched = limit;
+                    this.finished = limit >= this.maxDistance;
+                    break;
+                }
+                // every step moves one voxel along one axis
+                if (Math.abs(this.voxelX - this.startX)
+                        + Math.abs(this.voxelY - this.startY)
+                        + Math.abs(this.voxelZ - this.startZ)
+                        > this.maxVoxels) {
+                    this.finished = true;
+                    break;
+                }
+                if (this.voxelY < 0 || this.voxelY >= WORLD_HEIGHT) {
+                    // nothing to hit outside the world, unless coming back
+                    this.finished = this.voxelY < 0 ? this.stepY <= 0
+                            : this.stepY >= 0;
+                    continue;
+                }
+                checkVoxel(world);
+            }
+            return this.finished;
+        } finally {
+            // don't keep the chunk storage alive between calls
+            this.cachedSection = null;
+        }
+    }
+
+    /**
+     * Moves to the next voxel that might stop the ray, unless it is further
+     * away than {@code limit}.
+     */
+    private boolean next(double limit) {
+        if (this.cachedSection != null
+                && this.voxelX >> 4 == this.cachedChunkX
+                && this.voxelY >> 4 == this.cachedSectionY
+                && this.voxelZ >> 4 == this.cachedChunkZ) {
+            if (this.cachedSection.isEmpty()) {
+                return skipSection(limit);
+            }
+            skipClearRun(limit);
+        }
+        return step(limit);
+    }
+
+    /**
+     * Moves to the first voxel past the current section, which has nothing
+     * to hit, unless that is further away than {@code limit}.
+     */
+    private boolean skipSection(double limit) {
+        int minX = this.voxelX & ~15;
+        int minY = this.voxelY & ~15;
+        int minZ = this.voxelZ & ~15;
+        double exitX = sectionExit(this.originX, minX, this.dirX);
+        double exitY = sectionExit(this.originY, minY, this.dirY);
+        double exitZ = sectionExit(this.originZ, minZ, this.dirZ);
+        double exit = Math.min(exitX, Math.min(exitY, exitZ));
+        if (exit > limit) {
+            return false;
+        }
+        // the ray is still inside the section on the other axes
+        this.voxelX = clamp(floor(this.originX + this.dirX * exit), minX);
+        this.voxelY = clamp(floor(this.originY + this.dirY * exit), minY);
+        this.voxelZ = clamp(floor(this.originZ + this.dirZ * exit), minZ);
+        if (exit == exitX) {
+            this.voxelX = this.stepX > 0 ? minX + 16 : minX - 1;
+            this.voxelFace = this.stepX > 0 ? EnumFacing.WEST : EnumFacing.EAST;
+        } else if (exit == exitY) {
+            this.voxelY = this.stepY > 0 ? minY + 16 : minY - 1;
+            this.voxelFace = this.stepY > 0 ? EnumFacing.DOWN : EnumFacing.UP;
+        } else {
+            this.voxelZ = this.stepZ > 0 ? minZ + 16 : minZ - 1;
+            this.voxelFace =
+                    this.stepZ > 0 ? EnumFacing.NORTH : EnumFacing.SOUTH;
+        }
+        this.voxelDistance = exit;
+        this.tMaxX = boundaryDistance(this.originX, this.voxelX, this.dirX);
+        this.tMaxY = boundaryDistance(this.originY, this.voxelY, this.dirY);
+        this.tMaxZ = boundaryDistance(this.originZ, this.voxelZ, this.dirZ);
+        return true;
+    }
+
+    private static double sectionExit(double origin, int min, double dir) {
+        if (dir > 0) {
+            return (min + 16 - origin) / dir;
+        } else if (dir < 0) {
+            return (min - origin) / dir;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static int clamp(int voxel, int min) {
+        return Math.max(min, Math.min(min + 15, voxel));
+    }
+
+    /**
+     * Steps along X over the clear voxels ahead, while the ray stays in the
+     * current row and within {@code limit}.
+     */
+    private void skipClearRun(double limit) {
+        if (this.stepX == 0) {
+            return;
+        }
+        int run = this.cachedSection.getClearRunX(this.voxelX & 15,
+                this.voxelY & 15, this.voxelZ & 15, this.stepX);
+        for (; run > 0; run--) {
+            if (this.tMaxX >= this.tMaxY || this.tMaxX >= this.tMaxZ
+                    || !stepX(limit)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves to the next voxel, unless it is further away than {@code limit}.
+     */
+    private boolean step(double limit) {
+        if (this.tMaxX < this.tMaxY) {
+            if (this.tMaxX < this.tMaxZ) {
+                return stepX(limit);
+            }
+            return stepZ(limit);
+        }
+        if (this.tMaxY < this.tMaxZ) {
+            return stepY(limit);
+        }
+        return stepZ(limit);
+    }
+
+    private boolean stepX(double limit) {
+        if (this.tMaxX > limit) {
+            return false;
+        }
+        this.voxelDistance = this.tMaxX;
+        this.voxelX += this.stepX;
+        this.tMaxX += this.tDeltaX;
+        this.voxelFace = this.stepX > 0 ? EnumFacing.WEST : EnumFacing.EAST;
+        return true;
+    }
+
+    private boolean stepY(double limit) {
+        if (this.tMaxY > limit) {
+            return false;
+        }
+        this.voxelDistance = this.tMaxY;
+        this.voxelY += this.stepY;
+        this.tMaxY += this.tDeltaY;
+        this.voxelFace = this.stepY > 0 ? EnumFacing.DOWN : EnumFacing.UP;
+        return true;
+    }
+
+    private boolean stepZ(double limit) {
+        if (this.tMaxZ > limit) {
+            return false;
+        }
+        this.voxelDistance = this.tMaxZ;
+        this.voxelZ += this.stepZ;
+        this.tMaxZ += this.tDeltaZ;
+        this.voxelFace =
+                this.stepZ > 0 ? EnumFacing.NORTH : EnumFacing.SOUTH;
+        return true;
+    }
+
+    /**
+     * Checks the current voxel, finishing the ray if it stops here.
+     */
+    private boolean checkVoxel(World world) {
+        if (this.voxelY < 0 || this.voxelY >= WORLD_HEIGHT) {
+            return false;
+        }
+        if (!loadSection(world)) {
+            // unloaded, can't go any further
+            this.finished = true;
+            return true;
+        }
+        if (!this.cachedSection.isSet(this.voxelX, this.voxelY,
+                this.voxelZ)) {
+            return false;
+        }
+        IBlockState state = this.cachedSection.getStorage().get(
+                this.voxelX & 15, this.voxelY & 15, this.voxelZ & 15);
+        if (!this.index.verify(this.cachedSection, this.voxelX, this.voxelY,
+                this.voxelZ, state)) {
+            return false;
+        }
+        if (state.isFullCube() && this.voxelFace != null) {
+            this.hitDistance = this.voxelDistance;
+            this.hitX = this.originX + this.dirX * this.voxelDistance;
+            this.hitY = this.originY + this.dirY * this.voxelDistance;
+            this.hitZ = this.originZ + this.dirZ * this.voxelDistance;
+            this.hitFace = this.voxelFace;
+        } else {
+            // partial blocks, or the block the ray starts in
+            Vec3d start = new Vec3d(this.originX, this.originY, this.originZ);
+            RayTraceResult trace = state.collisionRayTrace(world,
+                    new BlockPos(this.voxelX, this.voxelY, this.voxelZ),
+                    start,
+                    new Vec3d(this.originX + this.dirX * this.maxDistance,
+                            this.originY + this.dirY * this.maxDistance,
+                            this.originZ + this.dirZ * this.maxDistance));
+            if (trace == null) {
+                return false;
+            }
+            this.hitDistance = trace.hitVec.distanceTo(start);
+            this.hitX = trace.hitVec.xCoord;
+            this.hitY = trace.hitVec.yCoord;
+            this.hitZ = trace.hitVec.zCoord;
+            this.hitFace = trace.sideHit;
+        }
+        this.hitState = state;
+        this.hit = true;
+        this.finished = true;
+        return true;
+    }
+
+    /**
+     * Caches the section of the current voxel, unless it is already cached.
+     *
+     * @return {@code false} if the chunk isn't loaded
+     */
+    private boolean loadSection(World world) {
+        int chunkX = this.voxelX >> 4;
+        int sectionY = this.voxelY >> 4;
+        int chunkZ = this.voxelZ >> 4;
+        if (this.cachedSection != null && chunkX == this.cachedChunkX
+                && sectionY == this.cachedSectionY
+                && chunkZ == this.cachedChunkZ) {
+            return true;
+        }
+        Chunk chunk = world.getChunkProvider().getLoadedChunk(chunkX, chunkZ);
+        if (chunk == null) {
+            return false;
+        }
+        this.cachedSection = this.index.getSection(chunk, sectionY);
+        this.cachedChunkX = chunkX;
+        this.cachedSectionY = sectionY;
+        this.cachedChunkZ = chunkZ;
+        return true;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.entity.EntityHook;
+import com.techshroom.ludicroushooks.entity.HookOwner;
+import com.techshroom.ludicroushooks.entity.HookState;
+import com.techshroom.ludicroushooks.network.HookEventsMessage;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.EntityTracker;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
+
+/**
+ * Collects the hooks whose state changed during a tick, and sends each
+ * client one {@link HookEventsMessage} with the ones it tracks. A hook that
+ * changes several times in a tick is only sent once, with its final state.
+ *
+ * <p>
+ * The owner goes out as an entity ID only to clients that track the owner.
+ * The others get the UUID, both with changes and right after a spawn, whose
+ * data can't tell the clients apart.
+ * </p>
+ */
+public class HookEventBatcher {
+
+    private final WorldServer world;
+    private final Set<EntityHook> changed = new LinkedHashSet<>();
+    // players that were sent, or may be about to be sent, a spawn with an
+    // owner they can't resolve
+    private final SetMultimap<EntityHook, EntityPlayerMP> unresolved =
+            HashMultimap.create();
+
+    HookEventBatcher(WorldServer world) {
+        this.world = world;
+    }
+
+    public void stateChanged(EntityHook hook) {
+        this.changed.add(hook);
+    }
+
+    /**
+     * Sends {@code player} the hook's owner UUID with the next flush, if the
+     * player tracks the hook by then.
+     */
+    public void ownerUnresolved(EntityHook hook, EntityPlayerMP player) {
+        this.unresolved.put(hook, player);
+    }
+
+    /**
+     * Sends the changes since the last flush, called at the end of each
+     * server world tick.
+     */
+    public void flush() {
+        if (this.changed.isEmpty() && this.unresolved.isEmpty()) {
+            return;
+        }
+        EntityTracker tracker = this.world.getEntityTracker();
+        Map<EntityPlayerMP, HookEventsMessage> messages = new HashMap<>();
+        for (EntityHook hook : this.changed) {
+            // dead or never spawned hooks aren't tracked by anyone
+            Set<? extends EntityPlayer> players =
+                    tracker.getTrackingPlayers(hook);
+            if (players.isEmpty()) {
+                continue;
+            }
+            EntityPlayer owner = hook.getOwnerEntity();
+            Set<? extends EntityPlayer> ownerTrackers = owner == null
+                    ? Collections.emptySet()
+                    : tracker.getTrackingPlayers(owner);
+            ByteBuf event = null;
+            ByteBuf withUUID = null;
+            for (EntityPlayer player : players) {
+                ByteBuf encoded;
+                if (player == owner || ownerTrackers.contains(player)) {
+                    if (event == null) {
+                        event = HookEventsMessage.encodeState(
+                                hook.getEntityId(), hook.getState());
+                    }
+                    encoded = event;
+                } else {
+                    if (withUUID == null) {
+                        withUUID = encodeWithUUID(hook);
+                    }
+                    encoded = withUUID;
+                }
+                messages.computeIfAbsent((EntityPlayerMP) player,
+                        k -> new HookEventsMessage()).add(encoded);
+            }
+        }
+        for (Map.Entry<EntityHook, EntityPlayerMP> entry : this.unresolved
+                .entries()) {
+            EntityHook hook = entry.getKey();
+            EntityPlayerMP player = entry.getValue();
+            // a change already carried the UUID
+            if (this.changed.contains(hook)
+                    || !tracker.getTrackingPlayers(hook).contains(player)) {
+                continue;
+            }
+            messages.computeIfAbsent(player, k -> new HookEventsMessage())
+                    .add(encodeWithUUID(hook));
+        }
+        this.changed.clear();
+        this.unresolved.clear();
+        SimpleNetworkWrapper network =
+                LudicrousHooks.getInstance().getNetwork();
+        messages.forEach((player, message) -> network.sendTo(message, player));
+    }
+
+    private static ByteBuf encodeWithUUID(EntityHook hook) {
+        HookState state = hook.getState();
+        HookOwner owner = state.getOwner();
+        if (owner != null) {
+            state = state.withOwner(owner.withoutEntity());
+        }
+        return HookEventsMessage.encodeState(hook.getEntityId(), state);
+    }
+
+    public void clear() {
+        this.changed.clear();
+        this.unresolved.clear();
+    }
+
+}
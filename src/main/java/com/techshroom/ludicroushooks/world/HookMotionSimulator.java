@@ -0,0 +1,112 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.techshroom.ludicroushooks.entity.EntityHook;
+import com.techshroom.ludicroushooks.movement.MotionController;
+
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Moves the owners of attached hooks on the server, for hooks in server
+ * motion mode. All of a world's hooks are simulated in one pass per tick,
+ * and the resulting velocities are sent to the clients by the entity
+ * tracker.
+ */
+public class HookMotionSimulator {
+
+    private final Map<EntityHook, MotionController<?>> controllers =
+            new LinkedHashMap<>();
+    private long lastPassNanos;
+    private int lastPassHooks;
+
+    HookMotionSimulator() {
+    }
+
+    public void add(EntityHook hook) {
+        // the controller needs the owner, so it's created on the first pass
+        this.controllers.putIfAbsent(hook, null);
+    }
+
+    public void remove(EntityHook hook) {
+        this.controllers.remove(hook);
+    }
+
+    public int size() {
+        return this.controllers.size();
+    }
+
+    /**
+     * Runs one pass, called at the start of each server world tick so the
+     * velocities go out with this tick's tracker updates.
+     */
+    public void tick() {
+        if (this.controllers.isEmpty()) {
+            this.lastPassHooks = 0;
+            this.lastPassNanos = 0;
+            return;
+        }
+        long start = System.nanoTime();
+        Iterator<Map.Entry<EntityHook, MotionController<?>>> iter =
+                this.controllers.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<EntityHook, MotionController<?>> entry = iter.next();
+            EntityHook hook = entry.getKey();
+            EntityPlayer owner = hook.getOwnerEntity();
+            if (hook.isDead || owner == null) {
+                iter.remove();
+                continue;
+            }
+            MotionController<?> controller = entry.getValue();
+            if (controller == null) {
+                controller = hook.createMotionController();
+                entry.setValue(controller);
+            }
+            controller.updatePlayerMotion(owner);
+            owner.velocityChanged = true;
+        }
+        this.lastPassHooks = this.controllers.size();
+        this.lastPassNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Returns how long the last pass took, in nanoseconds.
+     */
+    public long getLastPassNanos() {
+        return this.lastPassNanos;
+    }
+
+    /**
+     * Returns how many hooks the last pass simulated.
+     */
+    public int getLastPassHooks() {
+        return this.lastPassHooks;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.techshroom.ludicroushooks.entity.EntityHook;
+
+/**
+ * Hooks this client fired ahead of the server, waiting for the real hooks to
+ * replace them. Only client worlds have predictions.
+ *
+ * <p>
+ * Each prediction gets a shot number, which the client sends in the
+ * {@code HookShotMessage} that fires the shot on the server. The server sends
+ * it back in the spawn data of the hook, so a hook only replaces the
+ * prediction of its own shot. Shots the server rejects never get a hook, and
+ * don't affect the numbers of later shots.
+ * </p>
+ */
+public class HookPredictions {
+
+    // shots that timed out, kept for hooks the server fired late
+    private static final int MAX_EXPIRED = 16;
+
+    // far away from the IDs the server hands out, and from -1
+    private int nextEntityId = Integer.MIN_VALUE;
+    // 0 is a hook nobody predicted
+    private int nextShot = 1;
+    private final Deque<EntityHook> predictions = new ArrayDeque<>();
+    private final Deque<EntityHook> expired = new ArrayDeque<>();
+
+    HookPredictions() {
+    }
+
+    /**
+     * Returns an entity ID for a client-only hook.
+     */
+    public int nextEntityId() {
+        return this.nextEntityId++;
+    }
+
+    /**
+     * Returns the shot number for a new prediction.
+     */
+    public int nextShot() {
+        int shot = this.nextShot++;
+        if (this.nextShot == 0) {
+            this.nextShot = 1;
+        }
+        return shot;
+    }
+
+    public void add(EntityHook prediction) {
+        this.predictions.add(prediction);
+    }
+
+    /**
+     * Keeps a prediction that timed out, in case the server's hook still
+     * arrives.
+     */
+    public void expire(EntityHook prediction) {
+        this.predictions.remove(prediction);
+        if (this.expired.size() == MAX_EXPIRED) {
+            this.expired.removeFirst();
+        }
+        this.expired.add(prediction);
+    }
+
+    /**
+     * Removes and returns the prediction of the shot {@code hook} was fired
+     * by, or {@code null} if there is none. It may have expired.
+     */
+    public EntityHook claim(EntityHook hook) {
+        int shot = hook.getShot();
+        if (shot == 0) {
+            return null;
+        }
+        this.predictions.removeIf(prediction -> prediction.isDead);
+        EntityHook prediction = claim(this.predictions, shot);
+        return prediction != null ? prediction : claim(this.expired, shot);
+    }
+
+    private static EntityHook claim(Deque<EntityHook> from, int shot) {
+        Iterator<EntityHook> iter = from.iterator();
+        while (iter.hasNext()) {
+            EntityHook prediction = iter.next();
+            if (prediction.getShot() == shot) {
+                iter.remove();
+                return prediction;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        this.predictions.clear();
+        this.expired.clear();
+    }
+
+}
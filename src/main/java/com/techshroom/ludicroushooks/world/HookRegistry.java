@@ -0,0 +1,93 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.techshroom.ludicroushooks.entity.EntityHook;
+
+/**
+ * The live hooks of a world, by hook UUID and by owner. Hooks are added when
+ * they join the world and removed when they die or their chunk unloads.
+ */
+public class HookRegistry {
+
+    private final Map<UUID, EntityHook> byId = new HashMap<>();
+    private final SetMultimap<UUID, EntityHook> byOwner =
+            HashMultimap.create();
+    // owner each hook was registered under, in case it changes
+    private final Map<EntityHook, UUID> owners = new HashMap<>();
+
+    void add(EntityHook hook) {
+        this.byId.put(hook.getUniqueID(), hook);
+        UUID owner = hook.getOwner();
+        if (owner != null) {
+            this.byOwner.put(owner, hook);
+            this.owners.put(hook, owner);
+        }
+    }
+
+    public void remove(EntityHook hook) {
+        this.byId.remove(hook.getUniqueID(), hook);
+        UUID owner = this.owners.remove(hook);
+        if (owner != null) {
+            this.byOwner.remove(owner, hook);
+        }
+    }
+
+    /**
+     * Returns the hook with the given UUID, or {@code null} if it isn't
+     * loaded.
+     */
+    public EntityHook get(UUID id) {
+        return this.byId.get(id);
+    }
+
+    public Collection<EntityHook> getByOwner(UUID owner) {
+        return Collections.unmodifiableSet(this.byOwner.get(owner));
+    }
+
+    public Collection<EntityHook> getAll() {
+        return Collections.unmodifiableCollection(this.byId.values());
+    }
+
+    /**
+     * Returns the owners that have at least one hook in this world.
+     */
+    public Collection<UUID> getOwners() {
+        return Collections.unmodifiableSet(this.byOwner.keySet());
+    }
+
+    public int size() {
+        return this.byId.size();
+    }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.entity.EntityHook;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraftforge.common.util.Constants.NBT;
+
+/**
+ * Pending hooks waiting to be spawned back into a world. A few are spawned
+ * each tick, taking turns between owners, so many players joining at once
+ * can't stall a tick. Hooks whose saved chunk isn't loaded wait for it, and
+ * take their turn again once it loads. Hooks that wait too long, or whose
+ * owner isn't in their dimension, go back to the pending hooks.
+ */
+public class HookRestoreQueue {
+
+    // five minutes
+    private static final long MAX_WAIT_TICKS = 5 * 60 * 20;
+    private static final long EXPIRE_INTERVAL_TICKS = 10 * 20;
+
+    private final World world;
+    // owners with hooks left, in turn order
+    private final Deque<OwnerQueue> turns = new ArrayDeque<>();
+    private final Map<UUID, OwnerQueue> byOwner = new HashMap<>();
+    // hooks waiting for their chunk to load, by chunk
+    private final Map<Long, List<Waiting>> waiting = new HashMap<>();
+
+    HookRestoreQueue(World world) {
+        this.world = world;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    public void add(UUID owner, Collection<NBTTagCompound> hooks) {
+        if (hooks.isEmpty()) {
+            return;
+        }
+        getQueue(owner).hooks.addAll(hooks);
+    }
+
+    private OwnerQueue getQueue(UUID owner) {
+        OwnerQueue queue = this.byOwner.get(owner);
+        if (queue == null) {
+            queue = new OwnerQueue(owner);
+            this.byOwner.put(owner, queue);
+            this.turns.add(queue);
+        }
+        return queue;
+    }
+
+    public int size() {
+        int size = 0;
+        for (OwnerQueue queue : this.turns) {
+            size += queue.hooks.size();
+        }
+        for (List<Waiting> hooks : this.waiting.values()) {
+            size += hooks.size();
+        }
+        return size;
+    }
+
+    /**
+     * Queues the hooks that were waiting for a chunk that just loaded.
+     */
+    public void onChunkLoaded(int chunkX, int chunkZ) {
+        List<Waiting> hooks = this.waiting.remove(chunkKey(chunkX, chunkZ));
+        if (hooks == null) {
+            return;
+        }
+        for (Waiting hook : hooks) {
+            getQueue(hook.owner).hooks.add(hook.data);
+        }
+    }
+
+    /**
+     * Hands hooks that waited too long for their chunk back to the pending
+     * hooks.
+     */
+    private void expireWaiting() {
+        long now = this.world.getTotalWorldTime();
+        Iterator<List<Waiting>> lists = this.waiting.values().iterator();
+        while (lists.hasNext()) {
+            List<Waiting> hooks = lists.next();
+            Iterator<Waiting> iter = hooks.iterator();
+            while (iter.hasNext()) {
+                Waiting hook = iter.next();
+                if (now - hook.since >= MAX_WAIT_TICKS) {
+                    iter.remove();
+                    LudicrousHooks.getInstance().addPendingHook(hook.owner,
+                            hook.data);
+                }
+            }
+            if (hooks.isEmpty()) {
+                lists.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns every hook of {@code owner}, queued or waiting.
+     */
+    public List<NBTTagCompound> take(UUID owner) {
+        List<NBTTagCompound> taken = new ArrayList<>();
+        OwnerQueue queue = this.byOwner.remove(owner);
+        if (queue != null) {
+            this.turns.remove(queue);
+            taken.addAll(queue.hooks);
+        }
+        Iterator<List<Waiting>> lists = this.waiting.values().iterator();
+        while (lists.hasNext()) {
+            List<Waiting> hooks = lists.next();
+            Iterator<Waiting> iter = hooks.iterator();
+            while (iter.hasNext()) {
+                Waiting hook = iter.next();
+                if (hook.owner.equals(owner)) {
+                    iter.remove();
+                    taken.add(hook.data);
+                }
+            }
+            if (hooks.isEmpty()) {
+                lists.remove();
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Spawns up to {@code budget} hooks, one per owner in turn.
+     */
+    public void drain(int budget) {
+        if (!this.waiting.isEmpty() && this.world.getTotalWorldTime()
+                % EXPIRE_INTERVAL_TICKS == 0) {
+            expireWaiting();
+        }
+        while (budget > 0 && !this.turns.isEmpty()) {
+            OwnerQueue queue = this.turns.poll();
+            restore(queue.owner, queue.hooks.poll());
+            budget--;
+            if (queue.hooks.isEmpty()) {
+                this.byOwner.remove(queue.owner);
+            } else {
+                this.turns.add(queue);
+            }
+        }
+    }
+
+    private void restore(UUID owner, NBTTagCompound data) {
+        EntityPlayer player = LudicrousHooks.getInstance()
+                .getPlayerIndex(this.world).get(owner);
+        if (player == null) {
+            // left again before their turn
+            LudicrousHooks.getInstance().addPendingHook(owner, data);
+            return;
+        }
+        int dimension = data.hasKey("Dimension", NBT.TAG_INT)
+                ? data.getInteger("Dimension")
+                : this.world.provider.getDimension();
+        if (dimension != this.world.provider.getDimension()) {
+            if (player.worldObj.provider.getDimension() == dimension) {
+                // already back in the hook's dimension
+                LudicrousHooks.getInstance().getHookWorld(player.worldObj)
+                        .getRestoreQueue().getQueue(owner).hooks.add(data);
+            } else {
+                // restored when the owner next joins the hook's dimension
+                LudicrousHooks.getInstance().addPendingHook(owner, data);
+            }
+            return;
+        }
+        if (player.worldObj != this.world) {
+            // changed worlds before their turn, wait until they're back
+            LudicrousHooks.getInstance().addPendingHook(owner, data);
+            return;
+        }
+        NBTTagList pos = data.getTagList("Pos", NBT.TAG_DOUBLE);
+        if (pos.tagCount() == 3) {
+            int chunkX = MathHelper.floor_double(pos.getDoubleAt(0)) >> 4;
+            int chunkZ = MathHelper.floor_double(pos.getDoubleAt(2)) >> 4;
+            if (this.world.getChunkProvider().getLoadedChunk(chunkX,
+                    chunkZ) == null) {
+                // spawning into an unloaded chunk would drop the hook
+                this.waiting
+                        .computeIfAbsent(chunkKey(chunkX, chunkZ),
+                                k -> new ArrayList<>())
+                        .add(new Waiting(owner, data,
+                                this.world.getTotalWorldTime()));
+                return;
+            }
+        }
+        Entity hook = EntityList.createEntityFromNBT(data, this.world);
+        if (hook == null) {
+            LudicrousHooks.LOGGER
+                    .warn("Unspawned hook couldn't be recreated from " + data);
+            return;
+        }
+        if (!(hook instanceof EntityHook)) {
+            LudicrousHooks.LOGGER.warn("Unspanwed hook created an instance of "
+                    + hook.getClass().getName() + " rather than "
+                    + EntityHook.class.getName());
+        }
+        this.world.spawnEntityInWorld(hook);
+    }
+
+    /**
+     * Hands every queued hook back to the pending hooks.
+     */
+    void clear() {
+        for (OwnerQueue queue : this.turns) {
+            queue.hooks.forEach(h -> LudicrousHooks.getInstance()
+                    .addPendingHook(queue.owner, h));
+        }
+        for (List<Waiting> hooks : this.waiting.values()) {
+            hooks.forEach(h -> LudicrousHooks.getInstance()
+                    .addPendingHook(h.owner, h.data));
+        }
+        this.turns.clear();
+        this.byOwner.clear();
+        this.waiting.clear();
+    }
+
+    private static final class OwnerQueue {
+
+        private final UUID owner;
+        private final Deque<NBTTagCompound> hooks = new ArrayDeque<>();
+
+        OwnerQueue(UUID owner) {
+            this.owner = owner;
+        }
+
+    }
+
+    private static final class Waiting {
+
+        private final UUID owner;
+        private final NBTTagCompound data;
+        // world time the hook started waiting at
+        private final long since;
+
+        Waiting(UUID owner, NBTTagCompound data, long since) {
+            this.owner = owner;
+            this.data = data;
+            this.since = since;
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A hashed timing wheel, ticked once per world tick. Timeouts fire on the
+ * tick they are due, so nothing has to poll the clock while waiting.
+ */
+public class HookTimingWheel {
+
+    /**
+     * A schedulable task. Each timeout can be scheduled at most once at a
+     * time; scheduling it again moves it.
+     */
+    public static final class Timeout {
+
+        private final Runnable task;
+        private long deadline;
+        private int slot = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        public Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        public boolean isScheduled() {
+            return this.slot != -1;
+        }
+
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+    }
+
+    // Must be a power of two. Hook flights are at most ~21 ticks, so they
+    // all fit in one turn of the wheel.
+    private static final int SLOT_COUNT = 64;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+
+    private final Timeout[] slots = new Timeout[SLOT_COUNT];
+    private final Deque<Timeout> due = new ArrayDeque<>();
+    private long tick;
+    private int size;
+
+    /**
+     * @param tick
+     *            - The last tick that is considered processed
+     */
+    public HookTimingWheel(long tick) {
+        this.tick = tick;
+    }
+
+    public long getTick() {
+        return this.tick;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Schedules {@code timeout} to fire on tick {@code deadline}. Deadlines
+     * that have already been processed fire on the next tick.
+     */
+    public void schedule(Timeout timeout, long deadline) {
+        cancel(timeout);
+        timeout.deadline = Math.max(deadline, this.tick + 1);
+        link(timeout);
+        this.size++;
+    }
+
+    public void cancel(Timeout timeout) {
+        if (!timeout.isScheduled()) {
+            // might be due but not run yet
+            this.due.remove(timeout);
+            return;
+        }
+        unlink(timeout);
+        this.size--;
+    }
+
+    /**
+     * Processes all ticks up to and including {@code now}, firing due
+     * timeouts.
+     */
+    public void advanceTo(long now) {
+        while (this.tick < now) {
+            this.tick++;
+            collectDue(this.tick);
+            Timeout timeout;
+            while ((timeout = this.due.poll()) != null) {
+                timeout.task.run();
+            }
+        }
+    }
+
+    private void collectDue(long tick) {
+        int slot = (int) (tick & SLOT_MASK);
+        Timeout timeout = this.slots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadline <= tick) {
+                // unlink before running anything, tasks may reschedule
+                unlink(timeout);
+                this.size--;
+                this.due.add(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout) {
+        int slot = (int) (timeout.deadline & SLOT_MASK);
+        Timeout head = this.slots[slot];
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        this.slots[slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+
+}
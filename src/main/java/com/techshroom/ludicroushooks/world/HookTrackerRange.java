@@ -0,0 +1,110 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import java.lang.reflect.Field;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.entity.EntityHook;
+
+import net.minecraft.entity.EntityTracker;
+import net.minecraft.entity.EntityTrackerEntry;
+import net.minecraft.util.IntHashMap;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.relauncher.ReflectionHelper;
+
+/**
+ * Lifts the entity tracker's view distance cap for hooks, as far as their
+ * rope reaches.
+ *
+ * <p>
+ * The tracker only asks {@link EntityHook#isSpectatedByPlayer} about players
+ * in a box around the hook's server position, and caps that box at the
+ * entity view distance whatever range the entity was registered with. The
+ * server keeps hooks near their owner, but a rope reaches up to 1024 blocks
+ * away, so players next to the far end were never asked. Each hook's box is
+ * sized to its rope plus the view distance, and the rope test decides. A
+ * hook whose rope leaves its chunk also spawns for players that don't watch
+ * the hook's chunk.
+ * </p>
+ */
+public final class HookTrackerRange {
+
+    // the owner moves between state changes, and the hook trails it
+    private static final int SLACK = 32;
+    private static final Field TRACKED_ENTITIES = findField(
+            EntityTracker.class, "trackedEntityHashTable", "field_72794_c");
+    private static final Field MAX_RANGE = findField(
+            EntityTrackerEntry.class, "maxRange", "field_187262_f");
+
+    private static Field findField(Class<?> owner, String... names) {
+        try {
+            return ReflectionHelper.findField(owner, names);
+        } catch (ReflectionHelper.UnableToFindFieldException e) {
+            LudicrousHooks.LOGGER.warn("Can't find " + owner.getSimpleName()
+                    + "." + names[0] + ", hooks are tracked within view "
+                    + "distance");
+            return null;
+        }
+    }
+
+    /**
+     * Fits the hook's tracking range to its rope, called when it's added to
+     * the world and when its state changes.
+     */
+    public static void fit(WorldServer world, EntityHook hook) {
+        Vec3d end = hook.getAttachPosition();
+        double rope = 0;
+        if (end != null && hook.getOwnerEntity() != null) {
+            double dx = end.xCoord - hook.posX;
+            double dz = end.zCoord - hook.posZ;
+            rope = Math.sqrt(dx * dx + dz * dz);
+        }
+        // players by the far end may not watch the hook's chunk
+        hook.forceSpawn = rope > 16;
+        if (TRACKED_ENTITIES == null || MAX_RANGE == null) {
+            return;
+        }
+        int viewDistance = world.getMinecraftServer().getPlayerList()
+                .getEntityViewDistance();
+        int range = (int) Math.min(EntityHook.TRACKING_RANGE,
+                viewDistance + Math.ceil(rope) + SLACK);
+        try {
+            IntHashMap<?> entries = (IntHashMap<?>) TRACKED_ENTITIES
+                    .get(world.getEntityTracker());
+            Object entry = entries.lookup(hook.getEntityId());
+            if (entry != null) {
+                MAX_RANGE.setInt(entry, range);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HookTrackerRange() {
+    }
+
+}
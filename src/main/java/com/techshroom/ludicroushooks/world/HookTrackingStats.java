@@ -0,0 +1,79 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+/**
+ * Counts what hook tracking skipped compared to tracking every hook for
+ * every player in range. Byte counts come from the 1.10.2 packet layouts,
+ * with a one byte length prefix, the compression marker and two byte entity
+ * IDs.
+ */
+public class HookTrackingStats {
+
+    // The FML spawn message in a custom payload packet: 7 bytes of frame and
+    // "FML" channel headers, the discriminator, entity ID, mod ID, type ID,
+    // UUID, position, angles and thrower ID (71), the vanilla metadata (20),
+    // a typical quantized hook state (23) and the shot number (1).
+    private static final int SPAWN_BYTES = 7 + 71 + 20 + 23 + 1;
+    // The tracker repeats the metadata in its own packet after every spawn.
+    private static final int SPAWN_METADATA_BYTES = 5 + 20;
+    // The destroy packet once the hook is untracked.
+    private static final int DESTROY_BYTES = 6;
+    // A relative move packet: headers, entity ID, three shorts, on ground.
+    private static final int MOVE_BYTES = 3 + 2 + 6 + 1;
+
+    private long rejectedPairs;
+    private long skippedMoves;
+
+    /**
+     * Called when a player in range stops being relevant to a hook.
+     */
+    public void rejectedPair() {
+        this.rejectedPairs++;
+    }
+
+    /**
+     * Called when a position update to {@code players} trackers wasn't
+     * needed.
+     */
+    public void skippedMove(int players) {
+        this.skippedMoves += players;
+    }
+
+    public long getRejectedPairs() {
+        return this.rejectedPairs;
+    }
+
+    public long getSkippedMoves() {
+        return this.skippedMoves;
+    }
+
+    public long getBytesSaved() {
+        return this.rejectedPairs
+                * (SPAWN_BYTES + SPAWN_METADATA_BYTES + DESTROY_BYTES)
+                + this.skippedMoves * MOVE_BYTES;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.targeting.SectionAttachIndex;
+
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+/**
+ * Hook related state that belongs to a single world.
+ */
+public class HookWorld {
+
+    private final World world;
+    private final HookWorldListener listener;
+    private final SectionAttachIndex attachIndex;
+    private final HookTimingWheel timingWheel;
+    private final HookRegistry hooks = new HookRegistry();
+    private final HookRestoreQueue restoreQueue;
+    private final HookEventBatcher eventBatcher;
+    private final HookTrackingStats trackingStats = new HookTrackingStats();
+    private final HookPredictions predictions;
+    private final HookMotionSimulator motionSimulator;
+
+    public HookWorld(World world) {
+        this.world = world;
+        this.attachIndex =
+                new SectionAttachIndex(LudicrousHooks.getInstance()::blocksHook);
+        this.timingWheel = new HookTimingWheel(world.getTotalWorldTime());
+        this.restoreQueue = new HookRestoreQueue(world);
+        this.eventBatcher = world.isRemote ? null
+                : new HookEventBatcher((WorldServer) world);
+        this.predictions = world.isRemote ? new HookPredictions() : null;
+        this.motionSimulator =
+                world.isRemote ? null : new HookMotionSimulator();
+        this.listener = new HookWorldListener(this);
+        world.addEventListener(this.listener);
+    }
+
+    public World getWorld() {
+        return this.world;
+    }
+
+    public SectionAttachIndex getAttachIndex() {
+        return this.attachIndex;
+    }
+
+    /**
+     * Returns the wheel that times hook flights. It is advanced at the end
+     * of each server world tick.
+     */
+    public HookTimingWheel getTimingWheel() {
+        return this.timingWheel;
+    }
+
+    public HookRegistry getHooks() {
+        return this.hooks;
+    }
+
+    /**
+     * Returns the queue of pending hooks to spawn back in. It is drained at
+     * the end of each server world tick.
+     */
+    public HookRestoreQueue getRestoreQueue() {
+        return this.restoreQueue;
+    }
+
+    /**
+     * Returns the batcher for hook state changes, or {@code null} on the
+     * client. It is flushed at the end of each server world tick.
+     */
+    public HookEventBatcher getEventBatcher() {
+        return this.eventBatcher;
+    }
+
+    public HookTrackingStats getTrackingStats() {
+        return this.trackingStats;
+    }
+
+    /**
+     * Returns the simulator for hooks in server motion mode, or {@code null}
+     * on the client.
+     */
+    public HookMotionSimulator getMotionSimulator() {
+        return this.motionSimulator;
+    }
+
+    /**
+     * Returns the hooks this client predicted, or {@code null} on the server.
+     */
+    public HookPredictions getPredictions() {
+        return this.predictions;
+    }
+
+    /**
+     * Releases this world's state, called when the world unloads.
+     */
+    public void close() {
+        this.world.removeEventListener(this.listener);
+        this.attachIndex.clear();
+        this.restoreQueue.clear();
+        if (this.eventBatcher != null) {
+            this.eventBatcher.clear();
+        }
+        if (this.predictions != null) {
+            this.predictions.clear();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import com.techshroom.ludicroushooks.LudicrousHooks;
+import com.techshroom.ludicroushooks.entity.EntityHook;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+
+/**
+ * Forwards the world changes that a {@link HookWorld} cares about.
+ */
+class HookWorldListener implements IWorldEventListener {
+
+    private final HookWorld hookWorld;
+
+    HookWorldListener(HookWorld hookWorld) {
+        this.hookWorld = hookWorld;
+    }
+
+    @Override
+    public void notifyBlockUpdate(World worldIn, BlockPos pos,
+            IBlockState oldState, IBlockState newState, int flags) {
+        this.hookWorld.getAttachIndex().onBlockChanged(pos, oldState,
+                newState);
+    }
+
+    @Override
+    public void notifyLightSet(BlockPos pos) {
+    }
+
+    @Override
+    public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2,
+            int y2, int z2) {
+    }
+
+    @Override
+    public void playSoundToAllNearExcept(EntityPlayer player,
+            SoundEvent soundIn, SoundCategory category, double x, double y,
+            double z, float volume, float pitch) {
+    }
+
+    @Override
+    public void playRecord(SoundEvent soundIn, BlockPos pos) {
+    }
+
+    @Override
+    public void spawnParticle(int particleID, boolean ignoreRange,
+            double xCoord, double yCoord, double zCoord, double xSpeed,
+            double ySpeed, double zSpeed, int... parameters) {
+    }
+
+    @Override
+    public void onEntityAdded(Entity entityIn) {
+        if (entityIn instanceof EntityHook) {
+            this.hookWorld.getHooks().add((EntityHook) entityIn);
+            if (!entityIn.worldObj.isRemote) {
+                ((EntityHook) entityIn).onAddedToWorld(this.hookWorld);
+            }
+        }
+        if (entityIn.worldObj.isRemote && entityIn instanceof EntityPlayer) {
+            LudicrousHooks.getInstance().getPlayerIndex(entityIn.worldObj)
+                    .put((EntityPlayer) entityIn);
+        }
+    }
+
+    @Override
+    public void onEntityRemoved(Entity entityIn) {
+        if (entityIn instanceof EntityHook) {
+            EntityHook hook = (EntityHook) entityIn;
+            this.hookWorld.getHooks().remove(hook);
+            if (!entityIn.worldObj.isRemote) {
+                hook.onRemovedFromWorld(this.hookWorld);
+            }
+        }
+        if (entityIn instanceof EntityPlayer) {
+            if (entityIn.worldObj.isRemote) {
+                LudicrousHooks.getInstance().getPlayerIndex(entityIn.worldObj)
+                        .remove((EntityPlayer) entityIn);
+            } else {
+                for (EntityHook hook : this.hookWorld.getHooks().getAll()) {
+                    hook.forgetPlayer(entityIn.getEntityId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void broadcastSound(int soundID, BlockPos pos, int data) {
+    }
+
+    @Override
+    public void playEvent(EntityPlayer player, int type, BlockPos blockPosIn,
+            int data) {
+    }
+
+    @Override
+    public void sendBlockBreakProgress(int breakerId, BlockPos pos,
+            int progress) {
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Measures the spawn bandwidth of quantized attach positions, and checks
+ * their error bound and the exact fallback.
+ */
+public class QuantizedVec3dCodecTest {
+
+    private static final int SPAWNS = 500;
+    // a tag byte and three doubles, how positions were sent before
+    private static final int EXACT_BYTES = 1 + 3 * 8;
+
+    private static Vec3d randomAttachPosition(Random random) {
+        // hooks land within 1024 blocks of players spread over the world
+        return new Vec3d(random.nextGaussian() * 10000,
+                random.nextDouble() * 256, random.nextGaussian() * 10000);
+    }
+
+    private static int encodedSize(Vec3d value) {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        QuantizedVec3dCodec.write(buf, value);
+        return buf.readableBytes();
+    }
+
+    private static Vec3d roundTrip(Vec3d value) {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        QuantizedVec3dCodec.write(buf, value);
+        Vec3d read = QuantizedVec3dCodec.read(buf);
+        assertEquals("unread bytes", 0, buf.readableBytes());
+        return read;
+    }
+
+    private static void assertWithinError(Vec3d expected, Vec3d actual) {
+        String message = expected + " came back as " + actual;
+        assertTrue(message, Math.abs(expected.xCoord - actual.xCoord)
+                <= QuantizedVec3dCodec.MAX_ERROR);
+        assertTrue(message, Math.abs(expected.yCoord - actual.yCoord)
+                <= QuantizedVec3dCodec.MAX_ERROR);
+        assertTrue(message, Math.abs(expected.zCoord - actual.zCoord)
+                <= QuantizedVec3dCodec.MAX_ERROR);
+    }
+
+    @Test
+    public void spawnBandwidth() {
+        Random random = new Random(18);
+        int positionBytes = 0;
+        int stateBytes = 0;
+        for (int i = 0; i < SPAWNS; i++) {
+            Vec3d attach = randomAttachPosition(random);
+            positionBytes += encodedSize(attach);
+            HookState state = new HookState(
+                    HookOwner.of(UUID.randomUUID(), 1000 + i), attach,
+                    (long) (random.nextDouble() * 1024) * 1_000_000, false,
+                    false);
+            PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+            HookStateCodec.write(buf, state);
+            stateBytes += buf.readableBytes();
+        }
+        System.out.println(String.format(
+                "%d hook spawns: positions %d bytes (%d exact), "
+                        + "%.1f bytes per hook state",
+                SPAWNS, positionBytes, SPAWNS * EXACT_BYTES,
+                (double) stateBytes / SPAWNS));
+        // at least 40% smaller than exact doubles
+        assertTrue(positionBytes + " bytes",
+                positionBytes <= SPAWNS * EXACT_BYTES * 6 / 10);
+    }
+
+    @Test
+    public void quantizedWithinMaxError() {
+        Random random = new Random(4096);
+        for (int i = 0; i < SPAWNS; i++) {
+            Vec3d attach = randomAttachPosition(random);
+            assertWithinError(attach, roundTrip(attach));
+        }
+        // chunk edges, negative coordinates and rounding up to the next
+        // chunk
+        Vec3d[] edges = { new Vec3d(15.99999999, 0, -0.00000001),
+                new Vec3d(-16, 255.9999999, -17.5),
+                new Vec3d(-0.0000001, -63.25, 16),
+                new Vec3d((1 << 30) - 1, 100, -(1 << 30) + 1) };
+        for (Vec3d edge : edges) {
+            assertWithinError(edge, roundTrip(edge));
+        }
+    }
+
+    @Test
+    public void unrepresentableFallsBackToExact() {
+        Vec3d[] values = { new Vec3d(1 << 30, 64, 0),
+                new Vec3d(0, 64, -(1 << 30)), new Vec3d(0, 1 << 18, 0),
+                new Vec3d(Double.NaN, 64, 0),
+                new Vec3d(0, Double.POSITIVE_INFINITY, 0) };
+        for (Vec3d value : values) {
+            assertEquals(value.toString(), EXACT_BYTES, encodedSize(value));
+            Vec3d read = roundTrip(value);
+            assertEquals(Double.doubleToLongBits(value.xCoord),
+                    Double.doubleToLongBits(read.xCoord));
+            assertEquals(Double.doubleToLongBits(value.yCoord),
+                    Double.doubleToLongBits(read.yCoord));
+            assertEquals(Double.doubleToLongBits(value.zCoord),
+                    Double.doubleToLongBits(read.zCoord));
+        }
+    }
+
+    @Test
+    public void nullAndZeroAreOneByte() {
+        assertEquals(1, encodedSize(null));
+        assertEquals(1, encodedSize(Vec3d.ZERO));
+        assertEquals(null, roundTrip(null));
+        assertEquals(Vec3d.ZERO, roundTrip(Vec3d.ZERO));
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.entity;
+
+import java.util.UUID;
+
+import com.mojang.authlib.GameProfile;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.EmptyChunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+/**
+ * Hooks with a fixed owner and pull position, for driving the motion
+ * controllers without a running server.
+ */
+public final class StubHooks {
+
+    static {
+        Bootstrap.register();
+    }
+
+    /**
+     * Creates an empty server world, with no save behind it.
+     */
+    public static World createWorld() {
+        return new World(null, new WorldInfo(new NBTTagCompound()),
+                DimensionType.OVERWORLD.createDimension(), new Profiler(),
+                false) {
+
+            {
+                this.chunkProvider = createChunkProvider();
+            }
+
+            @Override
+            protected IChunkProvider createChunkProvider() {
+                World world = this;
+                return new IChunkProvider() {
+
+                    @Override
+                    public Chunk getLoadedChunk(int x, int z) {
+                        return null;
+                    }
+
+                    @Override
+                    public Chunk provideChunk(int x, int z) {
+                        return new EmptyChunk(world, x, z);
+                    }
+
+                    @Override
+                    public boolean unloadQueuedChunks() {
+                        return false;
+                    }
+
+                    @Override
+                    public String makeString() {
+                        return "EmptyChunkProvider";
+                    }
+
+                };
+            }
+
+            @Override
+            protected boolean isChunkLoaded(int x, int z,
+                    boolean allowEmpty) {
+                return allowEmpty;
+            }
+
+        };
+    }
+
+    /**
+     * Creates a player in {@code world}, at the origin.
+     */
+    public static EntityPlayer createPlayer(World world) {
+        return new EntityPlayer(world,
+                new GameProfile(UUID.randomUUID(), "player")) {
+
+            @Override
+            public boolean isSpectator() {
+                return false;
+            }
+
+        };
+    }
+
+    public static final class Motorized extends EntityMotorizedHook {
+
+        private final EntityPlayer owner;
+        private Vec3d pull;
+
+        public Motorized(EntityPlayer owner, Vec3d pull) {
+            super(owner.worldObj);
+            this.owner = owner;
+            this.pull = pull;
+        }
+
+        public void setPull(Vec3d pull) {
+            this.pull = pull;
+        }
+
+        @Override
+        public UUID getOwner() {
+            return this.owner.getUniqueID();
+        }
+
+        @Override
+        public EntityPlayer getOwnerEntity() {
+            return this.owner;
+        }
+
+        @Override
+        public Vec3d getPullPosition() {
+            return this.pull;
+        }
+
+    }
+
+    public static final class Hang extends EntityHangHook {
+
+        private final EntityPlayer owner;
+        private final Vec3d pull;
+
+        public Hang(EntityPlayer owner, Vec3d pull) {
+            super(owner.worldObj);
+            this.owner = owner;
+            this.pull = pull;
+        }
+
+        @Override
+        public UUID getOwner() {
+            return this.owner.getUniqueID();
+        }
+
+        @Override
+        public EntityPlayer getOwnerEntity() {
+            return this.owner;
+        }
+
+        @Override
+        public Vec3d getPullPosition() {
+            return this.pull;
+        }
+
+    }
+
+    private StubHooks() {
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.inventory.EntityEquipmentSlot;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketEntityEquipment;
+import net.minecraft.network.play.server.SPacketSetSlot;
+
+/**
+ * Counts the packets a shot and retract cost when only the gun's damage
+ * changes, against linking the hook with a UUID tag on the stack. Either
+ * way the owner gets a slot update, and every player tracking the owner an
+ * equipment update, each carrying the whole stack.
+ */
+public class GunStackBandwidthTest {
+
+    private static final int CYCLES = 1000;
+    // players watching the owner fire
+    private static final int TRACKERS = 10;
+    // one byte length prefix, the compression marker and the packet ID
+    private static final int FRAME_BYTES = 3;
+    private static final int HOTBAR_SLOT = 36;
+
+    private static Item gun;
+
+    @BeforeClass
+    public static void registerItems() {
+        Bootstrap.register();
+        gun = new ItemMotorizedGrappleGun();
+    }
+
+    private static int packetBytes(Packet<?> packet) throws IOException {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        packet.writePacketData(buf);
+        return FRAME_BYTES + buf.readableBytes();
+    }
+
+    /**
+     * Returns the bytes sent for one stack change, to the owner and the
+     * players tracking them.
+     */
+    private static int changeBytes(ItemStack stack) throws IOException {
+        return packetBytes(new SPacketSetSlot(0, HOTBAR_SLOT, stack))
+                + TRACKERS * packetBytes(new SPacketEntityEquipment(1000,
+                        EntityEquipmentSlot.MAINHAND, stack));
+    }
+
+    /**
+     * The stack as shooting used to leave it, linked to the hook by tag.
+     */
+    private static ItemStack taggedShot(UUID hook) {
+        ItemStack stack = new ItemStack(gun, 1, ItemGrappleGun.SHOT);
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setUniqueId("hook", hook);
+        stack.setTagCompound(nbt);
+        return stack;
+    }
+
+    @Test
+    public void rapidFireSendsNoTag() throws IOException {
+        Random random = new Random(9);
+        long tagged = 0;
+        long plain = 0;
+        for (int i = 0; i < CYCLES; i++) {
+            UUID hook = new UUID(random.nextLong(), random.nextLong());
+            // retracting cleared the tag and the damage in both versions
+            ItemStack loaded = new ItemStack(gun, 1, ItemGrappleGun.IN_HAND);
+            tagged += changeBytes(taggedShot(hook)) + changeBytes(loaded);
+            plain += changeBytes(new ItemStack(gun, 1, ItemGrappleGun.SHOT))
+                    + changeBytes(loaded);
+        }
+        long perCycle = (tagged - plain) / CYCLES;
+        System.out.println(String.format(
+                "%d shot/retract cycles, %d trackers: %d bytes with the hook "
+                        + "tag, %d bytes with damage only, %d bytes saved "
+                        + "per shot",
+                CYCLES, TRACKERS, tagged, plain, perCycle));
+        // the root compound's type and empty name, two named longs and the
+        // end tag, where no tag is a single end byte; sent to the owner and
+        // every tracker
+        int tagBytes = 3 + (3 + "hookMost".length() + 8)
+                + (3 + "hookLeast".length() + 8);
+        assertEquals((1 + TRACKERS) * (long) tagBytes, perCycle);
+        assertTrue(plain < tagged);
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.movement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.techshroom.ludicroushooks.entity.StubHooks;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+/**
+ * Checks the {@link MutableVec3} controllers against the {@link Vec3d} code
+ * they replaced, and that an update doesn't allocate.
+ */
+public class MotionControllerTest {
+
+    private static final int STEPS = 20000;
+    private static final float EYE_HEIGHT = 1.62f;
+    private static final World WORLD = StubHooks.createWorld();
+
+    // the controllers start from the owner's motion
+    private static EntityPlayer createOwner(double motionX, double motionY,
+            double motionZ) {
+        EntityPlayer owner = StubHooks.createPlayer(WORLD);
+        owner.motionX = motionX;
+        owner.motionY = motionY;
+        owner.motionZ = motionZ;
+        return owner;
+    }
+
+    /**
+     * The controller math as it was before the mutable kernel, one new
+     * {@link Vec3d} per operation.
+     */
+    private static final class VecMotion {
+
+        private Vec3d motion;
+
+        VecMotion(double x, double y, double z) {
+            this.motion = new Vec3d(x, y, z);
+        }
+
+        void applyCollisions(boolean horizontally, boolean vertically,
+                double motionX, double motionY, double motionZ) {
+            Vec3d m = this.motion;
+            if (horizontally) {
+                if (motionX == 0) {
+                    m = new Vec3d(0, m.yCoord, m.zCoord);
+                }
+                if (motionZ == 0) {
+                    m = new Vec3d(m.zCoord, m.yCoord, 0);
+                }
+            }
+            if (vertically) {
+                if (motionY == 0) {
+                    m = new Vec3d(m.xCoord, 0, m.zCoord);
+                }
+            }
+            this.motion = m;
+        }
+
+        void pull(Vec3d eVec, double posX, double posY, double posZ,
+                float eyeHeight, AxisAlignedBB box) {
+            Vec3d pVec = new Vec3d(posX, posY, posZ).addVector(0, eyeHeight,
+                    0);
+            Vec3d currentDist = eVec.subtract(pVec);
+            double currentDistScalar = currentDist.lengthVector();
+            Vec3d rescaledDiff = currentDist.scale(0.2 / currentDistScalar);
+
+            if (currentDistScalar < 4) {
+                if (this.motion.lengthSquared() > 0.3) {
+                    this.motion = this.motion.scale(0.6);
+                }
+            } else if (box.intersects(eVec.xCoord, eVec.yCoord, eVec.zCoord,
+                    eVec.xCoord + 0.1, eVec.yCoord + 0.1,
+                    eVec.zCoord + 0.1)) {
+                this.motion = this.motion.scale(0.5);
+            }
+
+            this.motion = this.motion.add(rescaledDiff);
+        }
+
+        void dampenMotion() {
+            Vec3d v3 = this.motion.normalize();
+            double dot = this.motion.dotProduct(v3);
+            double len = v3.lengthVector();
+            Vec3d projected = v3.scale(dot / len);
+            double dampening = 0.05;
+            double invDamp = 1 - dampening;
+            this.motion = new Vec3d(
+                    projected.xCoord * dampening
+                            + this.motion.xCoord * invDamp,
+                    projected.yCoord * dampening
+                            + this.motion.yCoord * invDamp,
+                    projected.zCoord * dampening
+                            + this.motion.zCoord * invDamp);
+        }
+
+    }
+
+    private static void assertSameMotion(int step, VecMotion expected,
+            MotionControllerBase<?> actual) {
+        assertSameBits("x at step " + step, expected.motion.xCoord,
+                actual.motion.x);
+        assertSameBits("y at step " + step, expected.motion.yCoord,
+                actual.motion.y);
+        assertSameBits("z at step " + step, expected.motion.zCoord,
+                actual.motion.z);
+    }
+
+    private static void assertSameBits(String message, double expected,
+            double actual) {
+        assertEquals(message, Double.doubleToRawLongBits(expected),
+                Double.doubleToRawLongBits(actual));
+    }
+
+    // mostly small values, with exact zeroes to hit the collision and
+    // normalize edge cases
+    private static double nextComponent(Random random) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return 0;
+            case 1:
+                return -0.0;
+            case 2:
+                return random.nextGaussian() * 1e-5;
+            default:
+                return random.nextGaussian();
+        }
+    }
+
+    @Test
+    public void motorizedMatchesVec3dTrace() {
+        Random random = new Random(25);
+        double startX = nextComponent(random);
+        double startY = nextComponent(random);
+        double startZ = nextComponent(random);
+        VecMotion expected = new VecMotion(startX, startY, startZ);
+        MotorizedHookMotionController actual =
+                new MotorizedHookMotionController(new StubHooks.Motorized(
+                        createOwner(startX, startY, startZ), null));
+        double x = 0;
+        double y = 64;
+        double z = 0;
+        Vec3d pull = null;
+        for (int step = 0; step < STEPS; step++) {
+            if (step % 100 == 0) {
+                // re-hook somewhere new, sometimes right next to the player
+                double reach = random.nextBoolean() ? 3 : 60;
+                pull = new Vec3d(x + random.nextGaussian() * reach,
+                        y + random.nextGaussian() * reach,
+                        z + random.nextGaussian() * reach);
+            }
+            boolean horizontally = random.nextInt(10) == 0;
+            boolean vertically = random.nextInt(10) == 0;
+            double mx = nextComponent(random);
+            double my = nextComponent(random);
+            double mz = nextComponent(random);
+            expected.applyCollisions(horizontally, vertically, mx, my, mz);
+            actual.applyCollisions(horizontally, vertically, mx, my, mz);
+            assertSameMotion(step, expected, actual);
+
+            AxisAlignedBB box = new AxisAlignedBB(x - 0.3, y, z - 0.3,
+                    x + 0.3, y + 1.8, z + 0.3);
+            if (random.nextInt(20) == 0) {
+                // standing on the hook
+                box = new AxisAlignedBB(pull.xCoord - 0.3, pull.yCoord - 1,
+                        pull.zCoord - 0.3, pull.xCoord + 0.3,
+                        pull.yCoord + 1, pull.zCoord + 0.3);
+            }
+            expected.pull(pull, x, y, z, EYE_HEIGHT, box);
+            actual.pull(pull, x, y, z, EYE_HEIGHT, box);
+            assertSameMotion(step, expected, actual);
+
+            x += actual.motion.x;
+            y += actual.motion.y;
+            z += actual.motion.z;
+            expected.dampenMotion();
+            actual.dampenMotion();
+            assertSameMotion(step, expected, actual);
+        }
+    }
+
+    @Test
+    public void hangMatchesVec3dTrace() {
+        Random random = new Random(2025);
+        double startX = nextComponent(random);
+        double startY = nextComponent(random);
+        double startZ = nextComponent(random);
+        VecMotion expected = new VecMotion(startX, startY, startZ);
+        HangHookMotionController actual =
+                new HangHookMotionController(new StubHooks.Hang(
+                        createOwner(startX, startY, startZ), null));
+        for (int step = 0; step < STEPS; step++) {
+            boolean horizontally = random.nextInt(10) == 0;
+            boolean vertically = random.nextInt(10) == 0;
+            double mx = nextComponent(random);
+            double my = nextComponent(random);
+            double mz = nextComponent(random);
+            expected.applyCollisions(horizontally, vertically, mx, my, mz);
+            actual.applyCollisions(horizontally, vertically, mx, my, mz);
+            assertSameMotion(step, expected, actual);
+            expected.dampenMotion();
+            actual.dampenMotion();
+            assertSameMotion(step, expected, actual);
+            if (step % 500 == 0) {
+                // a fresh swing, the motion decays to zero otherwise
+                expected.motion = new Vec3d(mx, my, mz);
+                actual.motion.set(mx, my, mz);
+            }
+        }
+    }
+
+    @Test
+    public void updateDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory
+                        .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        MotorizedHookMotionController controller =
+                new MotorizedHookMotionController(new StubHooks.Motorized(
+                        createOwner(0.1, 0, 0.1), null));
+        Vec3d pull = new Vec3d(20, 80, 20);
+        AxisAlignedBB box = new AxisAlignedBB(-0.3, 64, -0.3, 0.3, 65.8, 0.3);
+        // warm up, and load everything the update touches
+        runUpdates(controller, pull, box, STEPS);
+        long before = threads.getThreadAllocatedBytes(thread);
+        runUpdates(controller, pull, box, STEPS);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(allocated + " bytes allocated over " + STEPS + " updates",
+                allocated < STEPS);
+    }
+
+    private static void runUpdates(MotorizedHookMotionController controller,
+            Vec3d pull, AxisAlignedBB box, int count) {
+        for (int i = 0; i < count; i++) {
+            controller.applyCollisions(false, false, 1, 1, 1);
+            controller.pull(pull, 0, 64, 0, EYE_HEIGHT, box);
+            controller.dampenMotion();
+        }
+    }
+
+}
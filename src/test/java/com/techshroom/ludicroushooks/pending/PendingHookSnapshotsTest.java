@@ -0,0 +1,341 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.pending;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Measures what reading and writing a snapshot allocates, which should be a
+ * few buffers on top of the hooks themselves, however big the file is. Also
+ * compares size and speed with the old JSON snapshot, which had one gzip
+ * stream per hook.
+ */
+public class PendingHookSnapshotsTest {
+
+    private static final int OWNERS = 4000;
+    private static final int HOOKS_PER_OWNER = 16;
+    private static final int HOOK_BYTES = 256;
+    // stream buffers, channel writes and the like
+    private static final long MAX_OVERHEAD = 1 << 20;
+    private static final int[] COMPARED_ENTRIES = { 1000, 100_000, 1_000_000 };
+    private static final int COMPARED_HOOKS_PER_OWNER = 4;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static long allocatedBytes() {
+        return THREADS
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static List<PendingHookSnapshots.Owner> createOwners() {
+        Random random = new Random(15);
+        List<PendingHookSnapshots.Owner> owners = new ArrayList<>(OWNERS);
+        for (int i = 0; i < OWNERS; i++) {
+            List<PendingHookSnapshots.Entry> hooks =
+                    new ArrayList<>(HOOKS_PER_OWNER);
+            for (int j = 0; j < HOOKS_PER_OWNER; j++) {
+                byte[] hook = new byte[HOOK_BYTES];
+                // NBT compresses, but not to nothing
+                for (int k = 0; k < hook.length; k++) {
+                    hook[k] = (byte) random.nextInt(16);
+                }
+                hooks.add(new PendingHookSnapshots.Entry(hook,
+                        random.nextLong()));
+            }
+            owners.add(new PendingHookSnapshots.Owner(
+                    new UUID(random.nextLong(), random.nextLong()), hooks));
+        }
+        return owners;
+    }
+
+    private static final class CountingVisitor
+            implements PendingHookJournal.Visitor {
+
+        int hooks;
+        long bytes;
+        long hash;
+
+        @Override
+        public void add(UUID owner, byte[] hook, long addedMillis) {
+            this.hooks++;
+            this.bytes += hook.length;
+            this.hash = this.hash * 31 + Arrays.hashCode(hook);
+        }
+
+        @Override
+        public void removeOwner(UUID owner) {
+            throw new AssertionError("snapshots don't remove owners");
+        }
+
+    }
+
+    @Test
+    public void writeAllocatesOnlyBuffers() throws IOException {
+        List<PendingHookSnapshots.Owner> owners = createOwners();
+        Path file = this.folder.newFile().toPath();
+        // warm up
+        PendingHookSnapshots.write(file, owners);
+        long before = allocatedBytes();
+        PendingHookSnapshots.write(file, owners);
+        long allocated = allocatedBytes() - before;
+        long hookBytes = (long) OWNERS * HOOKS_PER_OWNER * HOOK_BYTES;
+        System.out.println(String.format(
+                "snapshot write: %d KiB of hooks, %d KiB allocated",
+                hookBytes >> 10, allocated >> 10));
+        assertTrue(allocated + " bytes allocated", allocated < MAX_OVERHEAD);
+    }
+
+    @Test
+    public void readAllocatesOnlyTheHooks() throws IOException {
+        List<PendingHookSnapshots.Owner> owners = createOwners();
+        long expectedHash = 0;
+        for (PendingHookSnapshots.Owner owner : owners) {
+            for (PendingHookSnapshots.Entry hook : owner.hooks) {
+                expectedHash = expectedHash * 31 + Arrays.hashCode(hook.nbt);
+            }
+        }
+        Path file = this.folder.newFile().toPath();
+        PendingHookSnapshots.write(file, owners);
+        // warm up
+        PendingHookSnapshots.read(file, new CountingVisitor());
+        CountingVisitor visitor = new CountingVisitor();
+        long before = allocatedBytes();
+        PendingHookSnapshots.read(file, visitor);
+        long allocated = allocatedBytes() - before;
+
+        int hooks = OWNERS * HOOKS_PER_OWNER;
+        assertEquals(hooks, visitor.hooks);
+        assertEquals(expectedHash, visitor.hash);
+        // each hook is an array, with a 16 byte header
+        long hookBytes = visitor.bytes + hooks * 16L;
+        System.out.println(String.format(
+                "snapshot read: %d KiB of hooks, %d KiB allocated",
+                hookBytes >> 10, allocated >> 10));
+        assertTrue(allocated + " bytes allocated",
+                allocated < hookBytes + MAX_OVERHEAD);
+    }
+
+    /**
+     * The NBT of a hook as an entity saves it, with a random position,
+     * rotation and IDs.
+     */
+    private static byte[] hookNbt(Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        // compound, unnamed
+        out.writeByte(10);
+        out.writeUTF("");
+        writeTag(out, 8, "id");
+        out.writeUTF("ludicroushooks.hook.motor");
+        writeDoubles(out, "Pos", random.nextGaussian() * 10000,
+                random.nextDouble() * 256, random.nextGaussian() * 10000);
+        writeDoubles(out, "Motion", 0, 0, 0);
+        writeTag(out, 9, "Rotation");
+        out.writeByte(5);
+        out.writeInt(2);
+        out.writeFloat(random.nextFloat() * 360);
+        out.writeFloat(random.nextFloat() * 180 - 90);
+        writeTag(out, 5, "FallDistance");
+        out.writeFloat(0);
+        writeTag(out, 2, "Fire");
+        out.writeShort(-1);
+        writeTag(out, 2, "Air");
+        out.writeShort(300);
+        writeTag(out, 1, "OnGround");
+        out.writeByte(0);
+        writeTag(out, 3, "Dimension");
+        out.writeInt(random.nextInt(3) - 1);
+        writeTag(out, 1, "Invulnerable");
+        out.writeByte(0);
+        writeTag(out, 3, "PortalCooldown");
+        out.writeInt(0);
+        writeTag(out, 4, "UUIDMost");
+        out.writeLong(random.nextLong());
+        writeTag(out, 4, "UUIDLeast");
+        out.writeLong(random.nextLong());
+        writeTag(out, 4, "ownerMost");
+        out.writeLong(random.nextLong());
+        writeTag(out, 4, "ownerLeast");
+        out.writeLong(random.nextLong());
+        writeTag(out, 1, "attached");
+        out.writeByte(1);
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static void writeTag(DataOutputStream out, int type, String name)
+            throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+
+    private static void writeDoubles(DataOutputStream out, String name,
+            double x, double y, double z) throws IOException {
+        writeTag(out, 9, name);
+        out.writeByte(6);
+        out.writeInt(3);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(z);
+    }
+
+    /**
+     * Creates the owners as they are iterated, so a million hooks don't have
+     * to fit in memory.
+     */
+    private static Iterable<PendingHookSnapshots.Owner> generateOwners(
+            int entries) {
+        int owners = entries / COMPARED_HOOKS_PER_OWNER;
+        return () -> new Iterator<PendingHookSnapshots.Owner>() {
+
+            private final Random random = new Random(16);
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < owners;
+            }
+
+            @Override
+            public PendingHookSnapshots.Owner next() {
+                this.next++;
+                List<PendingHookSnapshots.Entry> hooks =
+                        new ArrayList<>(COMPARED_HOOKS_PER_OWNER);
+                for (int i = 0; i < COMPARED_HOOKS_PER_OWNER; i++) {
+                    try {
+                        hooks.add(new PendingHookSnapshots.Entry(
+                                hookNbt(this.random),
+                                this.random.nextLong()));
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                return new PendingHookSnapshots.Owner(new UUID(
+                        this.random.nextLong(), this.random.nextLong()),
+                        hooks);
+            }
+
+        };
+    }
+
+    /**
+     * Writes the old JSON snapshot, each hook gzipped on its own as
+     * {@code CompressedStreamTools.writeCompressed} did, then Base64.
+     */
+    private static void writeJson(Path file,
+            Iterable<PendingHookSnapshots.Owner> owners) throws IOException {
+        try (JsonWriter out =
+                new JsonWriter(Files.newBufferedWriter(file))) {
+            out.beginObject();
+            for (PendingHookSnapshots.Owner owner : owners) {
+                out.name(owner.id.toString());
+                out.beginArray();
+                for (PendingHookSnapshots.Entry hook : owner.hooks) {
+                    ByteArrayOutputStream gzipped =
+                            new ByteArrayOutputStream();
+                    try (OutputStream gzip = new GZIPOutputStream(gzipped)) {
+                        gzip.write(hook.nbt);
+                    }
+                    out.value(Base64.encodeBase64String(gzipped.toByteArray()));
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+    }
+
+    @Test
+    public void smallerThanJson() throws IOException {
+        for (int entries : COMPARED_ENTRIES) {
+            Iterable<PendingHookSnapshots.Owner> owners =
+                    generateOwners(entries);
+            Path json = this.folder.newFile().toPath();
+            Path file = this.folder.newFile().toPath();
+
+            long start = System.nanoTime();
+            writeJson(json, owners);
+            long jsonWriteNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            PendingHookSnapshots.write(file, owners);
+            long writeNanos = System.nanoTime() - start;
+
+            CountingVisitor jsonHooks = new CountingVisitor();
+            start = System.nanoTime();
+            PendingHookSnapshots.readJson(json, 0, jsonHooks);
+            long jsonReadNanos = System.nanoTime() - start;
+            CountingVisitor hooks = new CountingVisitor();
+            start = System.nanoTime();
+            PendingHookSnapshots.read(file, hooks);
+            long readNanos = System.nanoTime() - start;
+
+            assertEquals(entries, jsonHooks.hooks);
+            assertEquals(entries, hooks.hooks);
+            assertEquals(jsonHooks.hash, hooks.hash);
+            long jsonSize = Files.size(json);
+            long size = Files.size(file);
+            System.out.println(String.format(
+                    "%d hooks, %.1f bytes of NBT each: JSON %d KiB, "
+                            + "write %d ms, read %d ms; snapshot %d KiB "
+                            + "(%.0f%%), write %d ms, read %d ms",
+                    entries, (double) hooks.bytes / entries, jsonSize >> 10,
+                    jsonWriteNanos / 1_000_000, jsonReadNanos / 1_000_000,
+                    size >> 10, 100.0 * size / jsonSize,
+                    writeNanos / 1_000_000, readNanos / 1_000_000));
+            assertTrue(size + " bytes against " + jsonSize, size < jsonSize);
+            Files.delete(json);
+            Files.delete(file);
+        }
+    }
+
+}
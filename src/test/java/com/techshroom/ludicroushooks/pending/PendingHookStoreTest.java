@@ -0,0 +1,216 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.pending;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Checks that a journal cut off by a crash replays every record that was
+ * written in full, that closing finishes the last snapshot, and measures
+ * starting up with a large store.
+ */
+public class PendingHookStoreTest {
+
+    private static final int HOOKS = 100;
+    private static final UUID[] OWNERS = { new UUID(1, 1), new UUID(2, 2),
+            new UUID(3, 3) };
+    private static final int[] STARTUP_ENTRIES = { 10_000, 100_000 };
+    private static final int HOOKS_PER_OWNER = 4;
+    // players joining after the load
+    private static final int TAKES = 1000;
+    // submitting the load, however big the file; generous for slow machines
+    private static final long MAX_STARTUP_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static NBTTagCompound hook(int index) {
+        NBTTagCompound hook = new NBTTagCompound();
+        hook.setInteger("index", index);
+        return hook;
+    }
+
+    private static byte[] toBytes(NBTTagCompound hook) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompressedStreamTools.write(hook, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static void writeSnapshot(Path directory, int entries)
+            throws IOException {
+        List<PendingHookSnapshots.Owner> owners = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < entries / HOOKS_PER_OWNER; i++) {
+            List<PendingHookSnapshots.Entry> hooks = new ArrayList<>();
+            for (int j = 0; j < HOOKS_PER_OWNER; j++) {
+                hooks.add(new PendingHookSnapshots.Entry(
+                        toBytes(hook(i * HOOKS_PER_OWNER + j)), now));
+            }
+            owners.add(new PendingHookSnapshots.Owner(new UUID(i, i), hooks));
+        }
+        PendingHookSnapshots.write(directory.resolve("unspawnedHooks.dat"),
+                owners);
+    }
+
+    private static PendingHookStore load(Path directory) {
+        PendingHookStore store = new PendingHookStore(directory);
+        store.startLoading().join();
+        return store;
+    }
+
+    private static Path findJournal(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "unspawnedHooks.journal.*")) {
+            return files.iterator().next();
+        }
+    }
+
+    private static int countJournals(Path directory) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "unspawnedHooks.journal.*")) {
+            for (Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void truncatedJournalKeepsCompleteRecords() throws IOException {
+        Path directory = this.folder.newFolder().toPath();
+        PendingHookStore store = load(directory);
+        for (int i = 0; i < HOOKS; i++) {
+            store.add(OWNERS[i % OWNERS.length], hook(i));
+        }
+        Path journal = findJournal(directory);
+        long complete = Files.size(journal);
+        // the record the crash cuts off
+        store.add(OWNERS[0], hook(HOOKS));
+        long full = Files.size(journal);
+        byte[] original = Files.readAllBytes(journal);
+
+        // every cut inside the last record, from its length to its CRC
+        for (long cut = complete; cut < full; cut++) {
+            Files.write(journal, original);
+            try (FileChannel channel =
+                    FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(cut);
+            }
+            PendingHookStore recovered = load(directory);
+            assertEquals("cut at " + cut, HOOKS, recovered.getEntryCount());
+            recovered.close();
+        }
+
+        PendingHookStore recovered = load(directory);
+        Set<Integer> indices = new HashSet<>();
+        for (UUID owner : OWNERS) {
+            for (NBTTagCompound hook : recovered.take(owner)) {
+                int index = hook.getInteger("index");
+                assertEquals(OWNERS[index % OWNERS.length], owner);
+                indices.add(index);
+            }
+        }
+        assertEquals(HOOKS, indices.size());
+        for (int i = 0; i < HOOKS; i++) {
+            assertTrue("lost hook " + i, indices.contains(i));
+        }
+        recovered.close();
+        store.close();
+    }
+
+    @Test
+    public void closeFinishesTheSnapshot() throws IOException {
+        Path directory = this.folder.newFolder().toPath();
+        PendingHookStore store = load(directory);
+        for (int i = 0; i < HOOKS; i++) {
+            store.add(OWNERS[i % OWNERS.length], hook(i));
+        }
+        store.saveSnapshot();
+        store.close();
+        // the journal the snapshot covers is gone, the new one is left
+        assertEquals(1, countJournals(directory));
+        PendingHookStore reopened = load(directory);
+        assertEquals(HOOKS, reopened.getEntryCount());
+        reopened.close();
+    }
+
+    @Test
+    public void startupDoesNotWaitForTheFile() throws IOException {
+        for (int entries : STARTUP_ENTRIES) {
+            Path directory = this.folder.newFolder().toPath();
+            writeSnapshot(directory, entries);
+
+            long start = System.nanoTime();
+            PendingHookStore store = new PendingHookStore(directory);
+            CompletableFuture<Void> loading = store.startLoading();
+            long startupNanos = System.nanoTime() - start;
+            loading.join();
+            long loadNanos = System.nanoTime() - start;
+            assertEquals(entries, store.getEntryCount());
+
+            start = System.nanoTime();
+            for (int i = 0; i < TAKES; i++) {
+                assertEquals(HOOKS_PER_OWNER,
+                        store.take(new UUID(i, i)).size());
+            }
+            long takeNanos = (System.nanoTime() - start) / TAKES;
+            System.out.println(String.format(
+                    "%d pending hooks: startup %.3f ms, background load "
+                            + "%.1f ms, %.1f us per joining player",
+                    entries, startupNanos / 1_000_000.0,
+                    loadNanos / 1_000_000.0, takeNanos / 1000.0));
+            assertTrue(startupNanos + " ns to start loading " + entries
+                    + " hooks", startupNanos < MAX_STARTUP_NANOS);
+            store.close();
+        }
+    }
+
+}
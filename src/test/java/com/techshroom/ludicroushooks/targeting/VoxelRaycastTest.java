@@ -0,0 +1,319 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.targeting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.block.BlockSlab;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.storage.WorldInfo;
+
+/**
+ * Checks {@link VoxelRaycast} against {@link World#rayTraceBlocks} with the
+ * flags the hook used before, and compares their speed at 64, 256 and 1024
+ * blocks.
+ */
+public class VoxelRaycastTest {
+
+    private static final int RAYS = 5000;
+    private static final int BENCHMARK_RAYS = 2000;
+    // rayTraceBlocks gives up after 200 voxels, a 64 block ray crosses at
+    // most 192
+    private static final double CHECKED_RANGE = 64;
+    private static final int[] RANGES = { 64, 256, 1024 };
+    private static final double EPSILON = 1e-6;
+    // where rayTraceBlocks gives up
+    private static final int MAX_VOXELS = 201;
+
+    /**
+     * A world of 4x4 random chunks repeated in every direction, so long rays
+     * never run out of terrain. Blocks are put straight into the section
+     * storage, there is no lighting to update.
+     */
+    private static final class TiledWorld extends World {
+
+        private final Chunk[] tiles = new Chunk[16];
+
+        TiledWorld(long seed) {
+            super(null, new WorldInfo(new NBTTagCompound()),
+                    DimensionType.OVERWORLD.createDimension(), new Profiler(),
+                    false);
+            this.chunkProvider = createChunkProvider();
+            Random random = new Random(seed);
+            for (int i = 0; i < this.tiles.length; i++) {
+                Chunk chunk = new Chunk(this, i >> 2, i & 3);
+                fill(chunk, random);
+                this.tiles[i] = chunk;
+            }
+        }
+
+        Chunk getTile(int chunkX, int chunkZ) {
+            return this.tiles[(chunkX & 3) << 2 | chunkZ & 3];
+        }
+
+        @Override
+        protected IChunkProvider createChunkProvider() {
+            return new IChunkProvider() {
+
+                @Override
+                public Chunk getLoadedChunk(int x, int z) {
+                    return getTile(x, z);
+                }
+
+                @Override
+                public Chunk provideChunk(int x, int z) {
+                    return getTile(x, z);
+                }
+
+                @Override
+                public boolean unloadQueuedChunks() {
+                    return false;
+                }
+
+                @Override
+                public String makeString() {
+                    return "TiledChunkProvider";
+                }
+
+            };
+        }
+
+        @Override
+        protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+            return true;
+        }
+
+    }
+
+    private static IBlockState[] blocking;
+    private static IBlockState[] passable;
+
+    @BeforeClass
+    public static void registerBlocks() {
+        Bootstrap.register();
+        IBlockState slab = Blocks.STONE_SLAB.getDefaultState();
+        blocking = new IBlockState[] { Blocks.STONE.getDefaultState(),
+                Blocks.GLASS.getDefaultState(),
+                Blocks.LEAVES.getDefaultState(),
+                slab.withProperty(BlockSlab.HALF,
+                        BlockSlab.EnumBlockHalf.BOTTOM),
+                slab.withProperty(BlockSlab.HALF, BlockSlab.EnumBlockHalf.TOP),
+                Blocks.OAK_STAIRS.getDefaultState(),
+                Blocks.OAK_FENCE.getDefaultState() };
+        passable = new IBlockState[] { Blocks.TALLGRASS.getDefaultState(),
+                Blocks.WATER.getDefaultState() };
+    }
+
+    // solid ground with caves below 48, scattered blocks up to 96, and
+    // nothing above that
+    private static void fill(Chunk chunk, Random random) {
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        for (int y = 0; y < 96; y++) {
+            double density = y < 48 ? 0.7 : 0.02;
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    if (random.nextDouble() >= density) {
+                        continue;
+                    }
+                    IBlockState state;
+                    if (y < 48 && random.nextInt(4) != 0) {
+                        state = blocking[0];
+                    } else if (random.nextInt(4) == 0) {
+                        state = passable[random.nextInt(passable.length)];
+                    } else {
+                        state = blocking[random.nextInt(blocking.length)];
+                    }
+                    if (storage[y >> 4] == Chunk.NULL_BLOCK_STORAGE) {
+                        storage[y >> 4] =
+                                new ExtendedBlockStorage(y & ~15, true);
+                    }
+                    storage[y >> 4].set(x, y & 15, z, state);
+                }
+            }
+        }
+    }
+
+    private static double[] randomRays(Random random, int count) {
+        double[] rays = new double[count * 6];
+        for (int i = 0; i < rays.length; i += 6) {
+            rays[i] = random.nextGaussian() * 2000;
+            rays[i + 1] = 1 + random.nextDouble() * 127;
+            rays[i + 2] = random.nextGaussian() * 2000;
+            double dx = random.nextGaussian();
+            double dy = random.nextGaussian();
+            double dz = random.nextGaussian();
+            double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            rays[i + 3] = dx / length;
+            rays[i + 4] = dy / length;
+            rays[i + 5] = dz / length;
+        }
+        return rays;
+    }
+
+    private static VoxelRaycast castVoxel(World world,
+            SectionAttachIndex index, double[] rays, int i, double range) {
+        VoxelRaycast ray = new VoxelRaycast(rays[i], rays[i + 1],
+                rays[i + 2], rays[i + 3], rays[i + 4], rays[i + 5], range,
+                MAX_VOXELS, index);
+        ray.advance(world, range);
+        return ray;
+    }
+
+    private static RayTraceResult castVanilla(World world, double[] rays,
+            int i, double range) {
+        Vec3d start = new Vec3d(rays[i], rays[i + 1], rays[i + 2]);
+        Vec3d end = start.addVector(rays[i + 3] * range, rays[i + 4] * range,
+                rays[i + 5] * range);
+        return world.rayTraceBlocks(start, end, false, true, false);
+    }
+
+    @Test
+    public void matchesRayTraceBlocks() {
+        TiledWorld world = new TiledWorld(2);
+        SectionAttachIndex index =
+                new SectionAttachIndex(AttachabilityTable::isBlockingByDefault);
+        double[] rays = randomRays(new Random(64), RAYS);
+        int hits = 0;
+        for (int i = 0; i < rays.length; i += 6) {
+            VoxelRaycast actual =
+                    castVoxel(world, index, rays, i, CHECKED_RANGE);
+            RayTraceResult expected =
+                    castVanilla(world, rays, i, CHECKED_RANGE);
+            String message = "ray " + i / 6;
+            assertTrue(message + " didn't finish", actual.isFinished());
+            if (expected == null
+                    || expected.typeOfHit != RayTraceResult.Type.BLOCK) {
+                assertTrue(message + " hit " + actual.getBlockX() + ","
+                        + actual.getBlockY() + "," + actual.getBlockZ(),
+                        !actual.isHit());
+                continue;
+            }
+            hits++;
+            assertTrue(message + " missed " + expected.getBlockPos(),
+                    actual.isHit());
+            assertEquals(message, expected.getBlockPos().getX(),
+                    actual.getBlockX());
+            assertEquals(message, expected.getBlockPos().getY(),
+                    actual.getBlockY());
+            assertEquals(message, expected.getBlockPos().getZ(),
+                    actual.getBlockZ());
+            assertEquals(message, expected.sideHit, actual.getFace());
+            assertNotNull(message, actual.getState());
+            assertEquals(message, expected.hitVec.xCoord, actual.getHitX(),
+                    EPSILON);
+            assertEquals(message, expected.hitVec.yCoord, actual.getHitY(),
+                    EPSILON);
+            assertEquals(message, expected.hitVec.zCoord, actual.getHitZ(),
+                    EPSILON);
+        }
+        System.out.println(String.format(
+                "%d rays checked against rayTraceBlocks, %d hits", RAYS,
+                hits));
+        // both outcomes have to be covered for the check to mean anything
+        assertTrue(hits + " hits", hits > RAYS / 4 && hits < RAYS);
+    }
+
+    @Test
+    public void throughput() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory
+                        .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        TiledWorld world = new TiledWorld(1024);
+        SectionAttachIndex index =
+                new SectionAttachIndex(AttachabilityTable::isBlockingByDefault);
+        double[] rays = randomRays(new Random(256), BENCHMARK_RAYS);
+        // timings are only reported, a busy machine makes any comparison
+        // between the two flaky
+        for (int range : RANGES) {
+            // let the JIT settle, and build the section bitmaps
+            runVoxel(world, index, rays, range);
+            runVanilla(world, rays, range);
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            int voxelHits = runVoxel(world, index, rays, range);
+            long voxelNanos = (System.nanoTime() - start) / BENCHMARK_RAYS;
+            long voxelBytes = (threads.getThreadAllocatedBytes(thread)
+                    - before) / BENCHMARK_RAYS;
+
+            before = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            int vanillaHits = runVanilla(world, rays, range);
+            long vanillaNanos = (System.nanoTime() - start) / BENCHMARK_RAYS;
+            long vanillaBytes = (threads.getThreadAllocatedBytes(thread)
+                    - before) / BENCHMARK_RAYS;
+
+            System.out.println(String.format(
+                    "%d blocks: voxel raycast %.2f us/ray, %d bytes/ray, "
+                            + "%d hits; rayTraceBlocks %.2f us/ray, "
+                            + "%d bytes/ray, %d hits; %.2fx",
+                    range, voxelNanos / 1000.0, voxelBytes, voxelHits,
+                    vanillaNanos / 1000.0, vanillaBytes, vanillaHits,
+                    (double) vanillaNanos / voxelNanos));
+        }
+    }
+
+    private static int runVoxel(World world, SectionAttachIndex index,
+            double[] rays, int range) {
+        int hits = 0;
+        for (int i = 0; i < rays.length; i += 6) {
+            if (castVoxel(world, index, rays, i, range).isHit()) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int runVanilla(World world, double[] rays, int range) {
+        int hits = 0;
+        for (int i = 0; i < rays.length; i += 6) {
+            if (castVanilla(world, rays, i, range) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+}
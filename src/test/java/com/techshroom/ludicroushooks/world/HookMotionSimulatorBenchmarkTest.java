@@ -0,0 +1,107 @@
+/*
+ * This file is part of LudicrousHooks, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.ludicroushooks.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.techshroom.ludicroushooks.entity.StubHooks;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+/**
+ * Measures a {@link HookMotionSimulator} pass at 200 concurrently hooked
+ * players.
+ */
+public class HookMotionSimulatorBenchmarkTest {
+
+    private static final int HOOKED_PLAYERS = 200;
+    private static final int TICKS = 5000;
+    // only catches a pass that eats a good part of the tick, the timing is
+    // what gets reported
+    private static final long MAX_PASS_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(25);
+
+    private final HookMotionSimulator simulator = new HookMotionSimulator();
+    private final EntityPlayer[] players = new EntityPlayer[HOOKED_PLAYERS];
+
+    private void setUp() {
+        World world = StubHooks.createWorld();
+        Random random = new Random(200);
+        for (int i = 0; i < HOOKED_PLAYERS; i++) {
+            EntityPlayer player = StubHooks.createPlayer(world);
+            player.setPosition(random.nextDouble() * 1000,
+                    64 + random.nextDouble() * 64, random.nextDouble() * 1000);
+            player.motionX = random.nextGaussian() * 0.1;
+            player.motionY = random.nextGaussian() * 0.1;
+            player.motionZ = random.nextGaussian() * 0.1;
+            Vec3d pull = new Vec3d(player.posX + random.nextGaussian() * 100,
+                    player.posY + random.nextGaussian() * 20,
+                    player.posZ + random.nextGaussian() * 100);
+            this.simulator.add(new StubHooks.Motorized(player, pull));
+            this.players[i] = player;
+        }
+    }
+
+    // returns the total time spent in passes
+    private long runTicks(int ticks) {
+        long total = 0;
+        for (int t = 0; t < ticks; t++) {
+            this.simulator.tick();
+            total += this.simulator.getLastPassNanos();
+            // the player moves with the motion the client is sent
+            for (EntityPlayer player : this.players) {
+                player.setPosition(player.posX + player.motionX,
+                        player.posY + player.motionY,
+                        player.posZ + player.motionZ);
+            }
+        }
+        return total;
+    }
+
+    @Test
+    public void twoHundredHookedPlayers() {
+        setUp();
+        // let the JIT settle
+        runTicks(TICKS);
+        assertEquals(HOOKED_PLAYERS, this.simulator.getLastPassHooks());
+        long passNanos = runTicks(TICKS) / TICKS;
+        System.out.println(String.format(
+                "server motion: %d hooked players, %.3f ms/tick, "
+                        + "%.3f us/hook",
+                HOOKED_PLAYERS, passNanos / 1_000_000.0,
+                passNanos / 1000.0 / HOOKED_PLAYERS));
+        assertTrue("pass took " + passNanos + " ns",
+                passNanos < MAX_PASS_NANOS);
+    }
+
+}